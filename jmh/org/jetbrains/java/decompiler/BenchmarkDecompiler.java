@@ -0,0 +1,123 @@
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.main.extern.IBytecodeProvider;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.main.extern.IResultSaver;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.jetbrains.java.decompiler.util.InterpreterUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Decompiles an archive of testData without writing anything, so that benchmarks measure the decompiler and not the disk.
+ * The engine is the current context of the thread until {@link #close}.
+ */
+final class BenchmarkDecompiler implements IBytecodeProvider, IResultSaver, AutoCloseable {
+  private final Map<String, ZipFile> archives = new HashMap<>();
+  private final Fernflower engine;
+
+  BenchmarkDecompiler(String archive, String... optionPairs) {
+    Map<String, Object> options = new HashMap<>();
+    options.put(IFernflowerPreferences.LOG_LEVEL, "error");
+    options.put(IFernflowerPreferences.THREADS, "1");
+    for (int i = 0; i < optionPairs.length; i += 2) {
+      options.put(optionPairs[i], optionPairs[i + 1]);
+    }
+
+    engine = new Fernflower(this, this, options, new PrintStreamLogger(System.out));
+    engine.addSource(getTestDataFile(archive));
+  }
+
+  static File getTestDataFile(String name) {
+    File file = new File("testData", name);
+    if (!file.isFile()) {
+      throw new IllegalStateException("No " + name + " in " + new File("testData").getAbsolutePath());
+    }
+    return file;
+  }
+
+  void decompile() {
+    engine.decompileContext();
+  }
+
+  /**
+   * Sets up the class tree like {@link #decompile} does, but decompiles nothing.
+   */
+  void loadClasses() {
+    DecompilerContext.getClassProcessor().loadClasses(null);
+  }
+
+  List<StructClass> getOwnClasses() {
+    List<StructClass> classes = new ArrayList<>();
+    for (StructClass cl : DecompilerContext.getStructContext().getClasses().values()) {
+      if (cl.isOwn()) {
+        classes.add(cl);
+      }
+    }
+    classes.sort(Comparator.comparing(cl -> cl.qualifiedName));
+    return classes;
+  }
+
+  @Override
+  public synchronized byte[] getBytecode(String externalPath, String internalPath) throws IOException {
+    File file = new File(externalPath);
+    if (internalPath == null) {
+      return InterpreterUtil.getBytes(file);
+    }
+
+    ZipFile archive = archives.get(externalPath);
+    if (archive == null) {
+      archive = new ZipFile(file);
+      archives.put(externalPath, archive);
+    }
+    ZipEntry entry = archive.getEntry(internalPath);
+    if (entry == null) throw new IOException("Entry not found: " + internalPath);
+    return InterpreterUtil.getBytes(archive, entry);
+  }
+
+  @Override
+  public void saveFolder(String path) { }
+
+  @Override
+  public void copyFile(String source, String path, String entryName) { }
+
+  @Override
+  public void saveClassFile(String path, String qualifiedName, String entryName, String content, int[] mapping) { }
+
+  @Override
+  public void createArchive(String path, String archiveName, Manifest manifest) { }
+
+  @Override
+  public void saveDirEntry(String path, String archiveName, String entryName) { }
+
+  @Override
+  public void copyEntry(String source, String path, String archiveName, String entry) { }
+
+  @Override
+  public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) { }
+
+  @Override
+  public void closeArchive(String path, String archiveName) { }
+
+  @Override
+  public void close() {
+    engine.clearContext();
+    for (ZipFile archive : archives.values()) {
+      try {
+        archive.close();
+      }
+      catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+  }
+}
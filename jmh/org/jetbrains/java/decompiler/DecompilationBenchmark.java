@@ -0,0 +1,30 @@
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decompiles whole archives of testData, from reading the classes to producing the sources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DecompilationBenchmark {
+  @Param({"bulk.jar", "kt25937.jar", "obfuscated.jar"})
+  public String archive;
+
+  @Param("1")
+  public String threads;
+
+  @Benchmark
+  public void decompile() {
+    try (BenchmarkDecompiler decompiler = new BenchmarkDecompiler(archive, IFernflowerPreferences.THREADS, threads)) {
+      decompiler.decompile();
+    }
+  }
+}
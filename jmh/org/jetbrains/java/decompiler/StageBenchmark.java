@@ -0,0 +1,249 @@
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.code.CodeConstants;
+import org.jetbrains.java.decompiler.code.InstructionSequence;
+import org.jetbrains.java.decompiler.code.cfg.ControlFlowGraph;
+import org.jetbrains.java.decompiler.main.ClassWriter;
+import org.jetbrains.java.decompiler.main.ClassesProcessor;
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.collectors.ImportCollector;
+import org.jetbrains.java.decompiler.main.rels.MethodProcessorRunnable;
+import org.jetbrains.java.decompiler.main.rels.PassProfiler;
+import org.jetbrains.java.decompiler.modules.decompiler.DomHelper;
+import org.jetbrains.java.decompiler.modules.decompiler.sforms.SSAUConstructorSparseEx;
+import org.jetbrains.java.decompiler.modules.decompiler.stats.RootStatement;
+import org.jetbrains.java.decompiler.modules.decompiler.vars.VarProcessor;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.jetbrains.java.decompiler.struct.StructMethod;
+import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
+import org.jetbrains.java.decompiler.struct.lazy.LazyLoader;
+import org.jetbrains.java.decompiler.util.DataInputFullStream;
+import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.TextBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Runs single stages of the decompiler over all classes or methods of an archive. The input of each stage is prepared
+ * by the real preceding stages, outside of the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StageBenchmark {
+  @Benchmark
+  public void structClassCreate(ClassFiles state, Blackhole blackhole) throws IOException {
+    for (byte[] classFile : state.classFiles) {
+      blackhole.consume(StructClass.create(new DataInputFullStream(classFile), true, state.loader));
+    }
+  }
+
+  @Benchmark
+  public void controlFlowGraph(InstructionSequences state, Blackhole blackhole) {
+    for (InstructionSequence seq : state.sequences) {
+      blackhole.consume(new ControlFlowGraph(seq));
+    }
+  }
+
+  @Benchmark
+  public void parseGraph(Graphs state, Blackhole blackhole) {
+    for (int i = 0; i < state.graphs.size(); i++) {
+      blackhole.consume(DomHelper.parseGraph(state.graphs.get(i), state.methods.get(i)));
+    }
+  }
+
+  @Benchmark
+  public void splitVariables(Statements state, Blackhole blackhole) {
+    for (int i = 0; i < state.roots.size(); i++) {
+      SSAUConstructorSparseEx ssau = new SSAUConstructorSparseEx();
+      ssau.splitVariables(state.roots.get(i), state.methods.get(i));
+      blackhole.consume(ssau);
+    }
+  }
+
+  @Benchmark
+  public void classToJava(ProcessedClasses state, Blackhole blackhole) {
+    for (int i = 0; i < state.nodes.size(); i++) {
+      DecompilerContext.startClass(state.importCollectors.get(i));
+      TextBuffer buffer = new TextBuffer(ClassesProcessor.AVERAGE_CLASS_SIZE);
+      new ClassWriter().classToJava(state.nodes.get(i), buffer, 0, null);
+      blackhole.consume(buffer);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Archive {
+    @Param({"bulk.jar", "kt25937.jar"})
+    public String archive;
+
+    BenchmarkDecompiler decompiler;
+
+    void open() {
+      decompiler = new BenchmarkDecompiler(archive);
+      decompiler.loadClasses();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+      if (decompiler != null) {
+        decompiler.close();
+        decompiler = null;
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ClassFiles extends Archive {
+    final List<byte[]> classFiles = new ArrayList<>();
+    LazyLoader loader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      open();
+      loader = decompiler.getOwnClasses().get(0).getLoader();
+
+      try (ZipFile file = new ZipFile(BenchmarkDecompiler.getTestDataFile(archive))) {
+        Enumeration<? extends ZipEntry> entries = file.entries();
+        while (entries.hasMoreElements()) {
+          ZipEntry entry = entries.nextElement();
+          if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+            classFiles.add(InterpreterUtil.getBytes(file, entry));
+          }
+        }
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class InstructionSequences extends Archive {
+    final List<InstructionSequence> sequences = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      open();
+      for (StructClass cl : decompiler.getOwnClasses()) {
+        for (StructMethod mt : cl.getMethods()) {
+          if (mt.containsCode()) {
+            mt.expandData(cl);
+            sequences.add(mt.getInstructionSequence());
+          }
+        }
+      }
+    }
+  }
+
+  // the graphs and statements are modified by the following stages, so they are built again for every invocation
+  @State(Scope.Thread)
+  public static class Graphs extends Archive {
+    final List<StructMethod> methods = new ArrayList<>();
+    final List<ControlFlowGraph> graphs = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      open();
+    }
+
+    @Setup(Level.Invocation)
+    public void buildGraphs() {
+      methods.clear();
+      graphs.clear();
+      forEachMethod(decompiler, (cl, mt, md, varProc) -> {
+        graphs.add(MethodProcessorRunnable.buildGraph(cl, mt, PassProfiler.startMethod(cl, mt)));
+        methods.add(mt);
+      });
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Statements extends Archive {
+    final List<StructMethod> methods = new ArrayList<>();
+    final List<RootStatement> roots = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      open();
+    }
+
+    @Setup(Level.Invocation)
+    public void buildStatements() {
+      methods.clear();
+      roots.clear();
+      forEachMethod(decompiler, (cl, mt, md, varProc) -> {
+        PassProfiler.MethodProfile profile = PassProfiler.startMethod(cl, mt);
+        ControlFlowGraph graph = MethodProcessorRunnable.buildGraph(cl, mt, profile);
+        roots.add(MethodProcessorRunnable.buildStatements(cl, mt, md, varProc, graph, profile));
+        methods.add(mt);
+      });
+    }
+  }
+
+  // decompiling a class changes its class tree, so every invocation starts from freshly loaded classes
+  @State(Scope.Thread)
+  public static class ProcessedClasses extends Archive {
+    final List<ClassNode> nodes = new ArrayList<>();
+    final List<ImportCollector> importCollectors = new ArrayList<>();
+
+    @Setup(Level.Invocation)
+    public void processClasses() throws IOException {
+      close();
+      open();
+      nodes.clear();
+      importCollectors.clear();
+
+      for (StructClass cl : decompiler.getOwnClasses()) {
+        ClassNode node = DecompilerContext.getClassProcessor().getMapRootClasses().get(cl.qualifiedName);
+        if (node == null || node.type != ClassNode.CLASS_ROOT || cl.hasModifier(CodeConstants.ACC_MODULE) ||
+            cl.isSynthetic() && "package-info".equals(node.simpleName)) {
+          continue;
+        }
+
+        ImportCollector importCollector = new ImportCollector(node);
+        DecompilerContext.startClass(importCollector);
+        DecompilerContext.getClassProcessor().processClass(node, importCollector);
+        nodes.add(node);
+        importCollectors.add(importCollector);
+      }
+    }
+  }
+
+  private interface MethodStage {
+    void run(StructClass cl, StructMethod mt, MethodDescriptor md, VarProcessor varProc) throws Throwable;
+  }
+
+  // sets up the context like ClassWrapper does and skips the methods the decompiler fails on
+  private static void forEachMethod(BenchmarkDecompiler decompiler, MethodStage stage) {
+    for (StructClass cl : decompiler.getOwnClasses()) {
+      ClassNode node = DecompilerContext.getClassProcessor().getMapRootClasses().get(cl.qualifiedName);
+      if (node == null) {
+        continue;
+      }
+
+      DecompilerContext.startClass(new ImportCollector(node));
+      DecompilerContext.setProperty(DecompilerContext.CURRENT_CLASS, cl);
+      for (StructMethod mt : cl.getMethods()) {
+        if (!mt.containsCode()) {
+          continue;
+        }
+
+        MethodDescriptor md = MethodDescriptor.parseDescriptor(mt, null);
+        VarProcessor varProc = new VarProcessor(mt, md);
+        DecompilerContext.startMethod(varProc);
+        try {
+          stage.run(cl, mt, md, varProc);
+        }
+        catch (Throwable ignored) { }
+      }
+    }
+  }
+}
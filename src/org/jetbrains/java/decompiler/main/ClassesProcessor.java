@@ -390,17 +390,7 @@ public class ClassesProcessor implements CodeConstants {
         buffer.append(moduleBuffer);
       }
       else {
-        new LambdaProcessor().processClass(root);
-
-        // add simple class names to implicit import
-        addClassNameToImport(root, importCollector);
-
-        // build wrappers for all nested classes (that's where actual processing takes place)
-        initWrappers(root);
-
-        new NestedClassProcessor().processClass(root, root);
-
-        new NestedMemberAccess().propagateMemberAccess(root);
+        processClass(root, importCollector);
 
         TextBuffer classBuffer = new TextBuffer(AVERAGE_CLASS_SIZE);
         new ClassWriter().classToJava(root, classBuffer, 0, null);
@@ -436,6 +426,23 @@ public class ClassesProcessor implements CodeConstants {
     }
   }
 
+  /**
+   * Decompiles the methods of {@code root} and its nested classes, everything {@link ClassWriter#classToJava} needs.
+   */
+  public void processClass(ClassNode root, ImportCollector importCollector) throws IOException {
+    new LambdaProcessor().processClass(root);
+
+    // add simple class names to implicit import
+    addClassNameToImport(root, importCollector);
+
+    // build wrappers for all nested classes (that's where actual processing takes place)
+    initWrappers(root);
+
+    new NestedClassProcessor().processClass(root, root);
+
+    new NestedMemberAccess().propagateMemberAccess(root);
+  }
+
   private static void initWrappers(ClassNode node) {
     if (node.type == ClassNode.CLASS_LAMBDA) {
       return;
@@ -22,6 +22,7 @@ public class DecompilerContext {
   public static final String CURRENT_METHOD_WRAPPER = "CURRENT_METHOD_WRAPPER";
   public static final String CURRENT_VAR_PROCESSOR = "CURRENT_VAR_PROCESSOR";
   public static final String RENAMER_FACTORY = "RENAMER_FACTORY";
+  public static final String PASS_PROFILER = "PASS_PROFILER";
 
   public final Map<String, Object> properties;
   public final IFernflowerLogger logger;
@@ -68,6 +69,40 @@ public class DecompilerContext {
     currentContext.set(context);
   }
 
+  /**
+   * Creates a context for a worker thread, sharing the structures of {@code rootContext} but with its own options and per-class state.
+   */
+  public static DecompilerContext forkContext(DecompilerContext rootContext) {
+    return new DecompilerContext(
+      new HashMap<>(rootContext.properties),
+      rootContext.logger,
+      rootContext.structContext,
+      rootContext.classProcessor,
+      rootContext.poolInterceptor,
+      rootContext.renamerFactory
+    );
+  }
+
+  /**
+   * Creates a context for processing the current method on another thread, with its own options but the class and method state of {@code context}.
+   * Imports are collected into a copy, the class registers them again when it is written. Bytecode mappings are collected
+   * into a mapper of the fork and added to the class by {@link #joinMethodContext} once the method is done.
+   */
+  public static DecompilerContext forkMethodContext(DecompilerContext context) {
+    DecompilerContext fork = forkContext(context);
+    fork.importCollector = context.importCollector != null ? new ImportCollector(context.importCollector) : null;
+    fork.varProcessor = context.varProcessor;
+    fork.counterContainer = context.counterContainer;
+    fork.bytecodeSourceMapper = new BytecodeSourceMapper();
+    return fork;
+  }
+
+  public static void joinMethodContext(DecompilerContext context, DecompilerContext fork) {
+    if (context.bytecodeSourceMapper != null) {
+      context.bytecodeSourceMapper.addAll(fork.bytecodeSourceMapper);
+    }
+  }
+
   public static void setProperty(String key, Object value) {
     getCurrentContext().properties.put(key, value);
   }
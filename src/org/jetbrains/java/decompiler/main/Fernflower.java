@@ -3,6 +3,7 @@ package org.jetbrains.java.decompiler.main;
 
 import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
 import org.jetbrains.java.decompiler.main.extern.*;
+import org.jetbrains.java.decompiler.main.rels.PassProfiler;
 import org.jetbrains.java.decompiler.modules.renamer.ConverterHelper;
 import org.jetbrains.java.decompiler.modules.renamer.IdentifierConverter;
 import org.jetbrains.java.decompiler.modules.renamer.PoolInterceptor;
@@ -21,6 +22,7 @@ import java.util.Map;
 
 public class Fernflower implements IDecompiledData {
   private final StructContext structContext;
+  private final LazyLoader loader;
   private final ClassesProcessor classProcessor;
   private final IIdentifierRenamer helper;
   private final IdentifierConverter converter;
@@ -39,7 +41,8 @@ public class Fernflower implements IDecompiledData {
       catch (IllegalArgumentException ignore) { }
     }
 
-    structContext = new StructContext(saver, this, new LazyLoader(provider));
+    loader = new LazyLoader(provider);
+    structContext = new StructContext(saver, this, loader);
     classProcessor = new ClassesProcessor(structContext);
 
     PoolInterceptor interceptor = null;
@@ -112,7 +115,20 @@ public class Fernflower implements IDecompiledData {
 
     classProcessor.loadClasses(helper);
 
+    PassProfiler passProfiler = null;
+    if (DecompilerContext.getOption(IFernflowerPreferences.PROFILE_PASSES)) {
+      passProfiler = new PassProfiler();
+      DecompilerContext.setProperty(DecompilerContext.PASS_PROFILER, passProfiler);
+    }
+
     structContext.saveContext();
+
+    if (passProfiler != null) {
+      DecompilerContext.getLogger().writeMessage(passProfiler.getReport(), IFernflowerLogger.Severity.INFO);
+    }
+
+    String message = "Constant pool cache: " + loader.getPoolCacheHits() + " hits, " + loader.getPoolCacheMisses() + " misses";
+    DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.TRACE);
   }
 
   public void addWhitelist(String prefix) {
@@ -33,6 +33,19 @@ public class BytecodeSourceMapper {
     unmappedLines.addAll(tracer.getUnmappedLines());
   }
 
+  public void addAll(BytecodeSourceMapper other) {
+    for (Entry<String, Map<String, Map<Integer, Integer>>> classEntry : other.mapping.entrySet()) {
+      for (Entry<String, Map<Integer, Integer>> methodEntry : classEntry.getValue().entrySet()) {
+        for (Entry<Integer, Integer> entry : methodEntry.getValue().entrySet()) {
+          addMapping(classEntry.getKey(), methodEntry.getKey(), entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    linesMapping.putAll(other.linesMapping);
+    unmappedLines.addAll(other.unmappedLines);
+    offset_total += other.offset_total;
+  }
+
   public void dumpMapping(TextBuffer buffer, boolean offsetsToHex) {
     if (mapping.isEmpty() && linesMapping.isEmpty()) {
       return;
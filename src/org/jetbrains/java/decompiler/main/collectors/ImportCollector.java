@@ -37,7 +37,7 @@ public class ImportCollector {
       currentPackagePoint = "";
     }
 
-    Map<String, StructClass> classes = DecompilerContext.getStructContext().getClasses();
+    StructContext context = DecompilerContext.getStructContext();
     StructClass currentClass = root.classStruct;
     while (currentClass != null) {
       // all field names for the current class ..
@@ -46,12 +46,24 @@ public class ImportCollector {
       }
 
       // .. and traverse through parent.
-      currentClass = currentClass.superClass != null ? classes.get(currentClass.superClass.getString()) : null;
+      currentClass = currentClass.superClass != null ? context.getClass(currentClass.superClass.getString()) : null;
     }
 
     collectConflictingShortNames(root, new HashMap<>());
   }
 
+  /**
+   * Creates a copy of {@code other} that can be used on another thread without affecting it.
+   */
+  public ImportCollector(ImportCollector other) {
+    mapSimpleNames.putAll(other.mapSimpleNames);
+    setNotImportedNames.addAll(other.setNotImportedNames);
+    setFieldNames.addAll(other.setFieldNames);
+    mapInnerClassNames.putAll(other.mapInnerClassNames);
+    currentPackageSlash = other.currentPackageSlash;
+    currentPackagePoint = other.currentPackagePoint;
+  }
+
   /**
    * Check whether the package-less name ClassName is shaded by variable in a context of
    * the decompiled class
@@ -191,7 +203,7 @@ public class ImportCollector {
   }
 
   private void getSuperClassInnerClasses(ClassNode node, Map<String, String> names) {
-    Map<String, StructClass> classes = DecompilerContext.getStructContext().getClasses();
+    StructContext context = DecompilerContext.getStructContext();
     LinkedList<String> queue = new LinkedList<>();
     StructClass currentClass = node.classStruct;
     while (currentClass != null) {
@@ -212,9 +224,9 @@ public class ImportCollector {
       }
 
       // .. and traverse through parent.
-      currentClass = !queue.isEmpty() ? classes.get(queue.removeFirst()) : null;
+      currentClass = !queue.isEmpty() ? context.getClass(queue.removeFirst()) : null;
       while (currentClass == null && !queue.isEmpty()) {
-        currentClass = classes.get(queue.removeFirst());
+        currentClass = context.getClass(queue.removeFirst());
       }
     }
   }
@@ -6,23 +6,25 @@ import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.Fernflower;
 import org.jetbrains.java.decompiler.main.extern.IBytecodeProvider;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
-import org.jetbrains.java.decompiler.main.extern.IResultSaver;
+import org.jetbrains.java.decompiler.main.extern.IParallelResultSaver;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.ZipArchiveReader;
+import org.jetbrains.java.decompiler.util.ZipArchiveWriter;
+import org.jetbrains.java.decompiler.util.ZipFileCache;
 
 import java.io.*;
+import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
-public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
+public class ConsoleDecompiler implements IBytecodeProvider, IParallelResultSaver {
   @SuppressWarnings("UseOfSystemOutOrSystemErr")
   public static void main(String[] args) {
     List<String> params = new ArrayList<String>();
@@ -143,14 +145,27 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
 
   private final File root;
   private final Fernflower engine;
-  private final Map<String, ZipOutputStream> mapArchiveStreams = new HashMap<>();
+  private final Map<String, ZipArchiveWriter> mapArchiveStreams = new HashMap<>();
   private final Map<String, Set<String>> mapArchiveEntries = new HashMap<>();
+  private final Map<String, ZipArchiveReader> mapArchiveSources = new HashMap<>();
+  private final ZipFileCache openArchives = new ZipFileCache();
+  private final boolean classEntriesOverridden = overridesSaveClassEntry(getClass());
 
   protected ConsoleDecompiler(File destination, Map<String, Object> options, IFernflowerLogger logger) {
     root = destination;
     engine = new Fernflower(this, root.isDirectory() ? this : new SingleFileSaver(destination), options, logger);
   }
 
+  private static boolean overridesSaveClassEntry(Class<?> type) {
+    try {
+      Method method = type.getMethod("saveClassEntry", String.class, String.class, String.class, String.class, String.class);
+      return method.getDeclaringClass() != ConsoleDecompiler.class;
+    }
+    catch (NoSuchMethodException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
   public void addSource(File source) {
     engine.addSource(source);
   }
@@ -169,6 +184,7 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
     }
     finally {
       engine.clearContext();
+      openArchives.close();
     }
   }
 
@@ -183,7 +199,8 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
       return InterpreterUtil.getBytes(file);
     }
     else {
-      try (ZipFile archive = new ZipFile(file)) {
+      try (ZipFileCache.Handle handle = openArchives.acquire(file)) {
+        ZipFile archive = handle.getArchive();
         ZipEntry entry = archive.getEntry(internalPath);
         if (entry == null) throw new IOException("Entry not found: " + internalPath);
         return InterpreterUtil.getBytes(archive, entry);
@@ -229,16 +246,14 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
   }
 
   @Override
-  public void createArchive(String path, String archiveName, Manifest manifest) {
+  public synchronized void createArchive(String path, String archiveName, Manifest manifest) {
     File file = new File(getAbsolutePath(path), archiveName);
     try {
       if (!(file.createNewFile() || file.isFile())) {
         throw new IOException("Cannot create file " + file);
       }
 
-      FileOutputStream fileStream = new FileOutputStream(file);
-      ZipOutputStream zipStream = manifest != null ? new JarOutputStream(fileStream, manifest) : new ZipOutputStream(fileStream);
-      mapArchiveStreams.put(file.getPath(), zipStream);
+      mapArchiveStreams.put(file.getPath(), new ZipArchiveWriter(new FileOutputStream(file), manifest));
     }
     catch (IOException ex) {
       DecompilerContext.getLogger().writeMessage("Cannot create archive " + file, ex);
@@ -251,21 +266,18 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
   }
 
   @Override
-  public void copyEntry(String source, String path, String archiveName, String entryName) {
+  public synchronized void copyEntry(String source, String path, String archiveName, String entryName) {
     String file = new File(getAbsolutePath(path), archiveName).getPath();
 
     if (!checkEntry(entryName, file)) {
       return;
     }
 
-    try (ZipFile srcArchive = new ZipFile(new File(source))) {
-      ZipEntry entry = srcArchive.getEntry(entryName);
+    try {
+      // copied as stored, without inflating and deflating it again
+      ZipArchiveWriter.Entry entry = getArchiveSource(file, source).readRaw(entryName);
       if (entry != null) {
-        try (InputStream in = srcArchive.getInputStream(entry)) {
-          ZipOutputStream out = mapArchiveStreams.get(file);
-          out.putNextEntry(new ZipEntry(entryName));
-          InterpreterUtil.copyStream(in, out);
-        }
+        mapArchiveStreams.get(file).write(entry);
       }
     }
     catch (IOException ex) {
@@ -274,23 +286,50 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
     }
   }
 
+  private ZipArchiveReader getArchiveSource(String file, String source) throws IOException {
+    ZipArchiveReader reader = mapArchiveSources.get(file);
+    if (reader == null || !reader.getFile().equals(new File(source))) {
+      if (reader != null) {
+        reader.close();
+      }
+      reader = new ZipArchiveReader(new File(source));
+      mapArchiveSources.put(file, reader);
+    }
+    return reader;
+  }
+
   @Override
-  public synchronized void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
+  public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
+    saveEntry(path, archiveName, compressEntry(entryName, content));
+  }
+
+  @Override
+  public Runnable prepareClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content, int[] mapping) {
+    if (classEntriesOverridden) { // a subclass saving class entries on its own still gets them
+      return () -> saveClassEntry(path, archiveName, qualifiedName, entryName, content);
+    }
+    ZipArchiveWriter.Entry entry = compressEntry(entryName, content);
+    return () -> saveEntry(path, archiveName, entry);
+  }
+
+  private static ZipArchiveWriter.Entry compressEntry(String entryName, String content) {
+    byte[] data = content != null ? content.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    return ZipArchiveWriter.compress(entryName, data);
+  }
+
+  // compressing is done by the caller, only the append happens under the lock
+  private synchronized void saveEntry(String path, String archiveName, ZipArchiveWriter.Entry entry) {
     String file = new File(getAbsolutePath(path), archiveName).getPath();
 
-    if (!checkEntry(entryName, file)) {
+    if (!checkEntry(entry.getName(), file)) {
       return;
     }
 
     try {
-      ZipOutputStream out = mapArchiveStreams.get(file);
-      out.putNextEntry(new ZipEntry(entryName));
-      if (content != null) {
-        out.write(content.getBytes(StandardCharsets.UTF_8));
-      }
+      mapArchiveStreams.get(file).write(entry);
     }
     catch (IOException ex) {
-      String message = "Cannot write entry " + entryName + " to " + file;
+      String message = "Cannot write entry " + entry.getName() + " to " + file;
       DecompilerContext.getLogger().writeMessage(message, ex);
     }
   }
@@ -307,9 +346,13 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
   }
 
   @Override
-  public void closeArchive(String path, String archiveName) {
+  public synchronized void closeArchive(String path, String archiveName) {
     String file = new File(getAbsolutePath(path), archiveName).getPath();
     try {
+      ZipArchiveReader source = mapArchiveSources.remove(file);
+      if (source != null) {
+        source.close();
+      }
       mapArchiveEntries.remove(file);
       mapArchiveStreams.remove(file).close();
     }
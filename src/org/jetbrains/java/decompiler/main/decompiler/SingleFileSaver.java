@@ -3,23 +3,21 @@ package org.jetbrains.java.decompiler.main.decompiler;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
-import org.jetbrains.java.decompiler.main.extern.IResultSaver;
-import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.main.extern.IParallelResultSaver;
+import org.jetbrains.java.decompiler.util.ZipArchiveReader;
+import org.jetbrains.java.decompiler.util.ZipArchiveWriter;
 
-public class SingleFileSaver implements IResultSaver {
+public class SingleFileSaver implements IParallelResultSaver {
   private final File target;
-  private ZipOutputStream output;
+  private ZipArchiveWriter output;
+  private ZipArchiveReader sourceArchive;
   private Set<String> entries = new HashSet<>();
 
   public SingleFileSaver(File target) {
@@ -43,12 +41,16 @@ public class SingleFileSaver implements IResultSaver {
   }
 
   @Override
-  public void createArchive(String path, String archiveName, Manifest manifest) {
+  public boolean supportsConcurrentArchives() {
+    return false;
+  }
+
+  @Override
+  public synchronized void createArchive(String path, String archiveName, Manifest manifest) {
     if (output != null)
       throw new UnsupportedOperationException("Attempted to write multiple archives at the same time");
     try {
-      FileOutputStream stream = new FileOutputStream(target);
-      output = manifest != null ? new JarOutputStream(stream, manifest) : new ZipOutputStream(stream);
+      output = new ZipArchiveWriter(new FileOutputStream(target), manifest);
     } catch (IOException e) {
       DecompilerContext.getLogger().writeMessage("Cannot create archive " + target, e);
     }
@@ -60,18 +62,19 @@ public class SingleFileSaver implements IResultSaver {
   }
 
   @Override
-  public void copyEntry(String source, String path, String archiveName, String entryName) {
+  public synchronized void copyEntry(String source, String path, String archiveName, String entryName) {
     if (!checkEntry(entryName))
       return;
 
-    try (ZipFile srcArchive = new ZipFile(new File(source))) {
-      ZipEntry entry = srcArchive.getEntry(entryName);
-      if (entry != null) {
-        try (InputStream in = srcArchive.getInputStream(entry)) {
-          output.putNextEntry(new ZipEntry(entryName));
-          InterpreterUtil.copyStream(in, output);
-        }
+    try {
+      if (sourceArchive == null || !sourceArchive.getFile().equals(new File(source))) {
+        if (sourceArchive != null)
+          sourceArchive.close();
+        sourceArchive = new ZipArchiveReader(new File(source));
       }
+      ZipArchiveWriter.Entry entry = sourceArchive.readRaw(entryName);
+      if (entry != null)
+        output.write(entry);
     }
     catch (IOException ex) {
       String message = "Cannot copy entry " + entryName + " from " + source + " to " + target;
@@ -81,23 +84,40 @@ public class SingleFileSaver implements IResultSaver {
 
   @Override
   public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
-    if (!checkEntry(entryName))
+    saveEntry(compressEntry(entryName, content));
+  }
+
+  @Override
+  public Runnable prepareClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content, int[] mapping) {
+    ZipArchiveWriter.Entry entry = compressEntry(entryName, content);
+    return () -> saveEntry(entry);
+  }
+
+  private static ZipArchiveWriter.Entry compressEntry(String entryName, String content) {
+    byte[] data = content != null ? content.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    return ZipArchiveWriter.compress(entryName, data);
+  }
+
+  private synchronized void saveEntry(ZipArchiveWriter.Entry entry) {
+    if (!checkEntry(entry.getName()))
         return;
 
     try {
-      output.putNextEntry(new ZipEntry(entryName));
-      if (content != null)
-          output.write(content.getBytes("UTF-8"));
+      output.write(entry);
     }
     catch (IOException ex) {
-      String message = "Cannot write entry " + entryName + " to " + target;
+      String message = "Cannot write entry " + entry.getName() + " to " + target;
       DecompilerContext.getLogger().writeMessage(message, ex);
     }
   }
 
   @Override
-  public void closeArchive(String path, String archiveName) {
+  public synchronized void closeArchive(String path, String archiveName) {
     try {
+      if (sourceArchive != null) {
+        sourceArchive.close();
+        sourceArchive = null;
+      }
       output.close();
       entries.clear();
       output = null;
@@ -41,15 +41,22 @@ public interface IFernflowerPreferences {
 
   String LOG_LEVEL = "log";
   String MAX_PROCESSING_METHOD = "mpm";
+  String MAX_SPLIT_FACTOR = "msf";
   String RENAME_ENTITIES = "ren";
   String USER_RENAMER_CLASS = "urc";
   String NEW_LINE_SEPARATOR = "nls";
   String INDENT_STRING = "ind";
   String BANNER = "ban";
   String THREADS = "thr";
+  String LIBRARY_INDEX_CACHE = "lic";
+  String WRITE_QUEUE_SIZE = "wqs";
+  String DECOMPILED_CLASS_CACHE = "dcc";
+  String PROFILE_PASSES = "ppr";
 
   String DUMP_ORIGINAL_LINES = "__dump_original_lines__";
   String UNIT_TEST_MODE = "__unit_test_mode__";
+  // bytes of bytecode from which the methods of a class are decompiled in parallel, if thr is at least 2
+  String PARALLEL_METHODS_CODE_LENGTH = "__parallel_methods_code_length__";
 
   String LINE_SEPARATOR_WIN = "\r\n";
   String LINE_SEPARATOR_UNX = "\n";
@@ -96,13 +103,17 @@ public interface IFernflowerPreferences {
 
     defaults.put(LOG_LEVEL, IFernflowerLogger.Severity.INFO.name());
     defaults.put(MAX_PROCESSING_METHOD, "0");
+    defaults.put(MAX_SPLIT_FACTOR, "64");
     defaults.put(RENAME_ENTITIES, "0");
     defaults.put(NEW_LINE_SEPARATOR, (InterpreterUtil.IS_WINDOWS ? "0" : "1"));
     defaults.put(INDENT_STRING, "   ");
     defaults.put(BANNER, "");
     defaults.put(UNIT_TEST_MODE, "0");
     defaults.put(DUMP_ORIGINAL_LINES, "0");
+    defaults.put(PARALLEL_METHODS_CODE_LENGTH, String.valueOf(16 * 1024));
     defaults.put(THREADS, String.valueOf(Runtime.getRuntime().availableProcessors()));
+    defaults.put(WRITE_QUEUE_SIZE, "64");
+    defaults.put(PROFILE_PASSES, "0");
     defaults.put(USE_JAD_VARNAMING, "0");
     defaults.put(SKIP_EXTRA_FILES, "0");
 
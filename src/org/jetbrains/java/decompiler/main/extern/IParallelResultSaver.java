@@ -0,0 +1,10 @@
+package org.jetbrains.java.decompiler.main.extern;
+
+/**
+ * Result saver that can do the expensive part of saving a class entry, such as compressing it, on the decompiling
+ * threads. {@link #prepareClassEntry} is called concurrently, the returned action is then run in place of
+ * {@code saveClassEntry}, one at a time.
+ */
+public interface IParallelResultSaver extends IResultSaver {
+  Runnable prepareClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content, int[] mapping);
+}
@@ -3,6 +3,10 @@ package org.jetbrains.java.decompiler.main.extern;
 
 import java.util.jar.Manifest;
 
+/**
+ * Receives the decompiled output. Calls are made one at a time from a single writer thread, which is not the thread
+ * that started decompiling; only {@link IParallelResultSaver#prepareClassEntry} is called concurrently.
+ */
 public interface IResultSaver {
   void saveFolder(String path);
 
@@ -19,4 +23,11 @@ public interface IResultSaver {
   void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content);
 
   void closeArchive(String path, String archiveName);
+
+  /**
+   * @return whether {@link #createArchive} may be called again before the previous archive is closed
+   */
+  default boolean supportsConcurrentArchives() {
+    return true;
+  }
 }
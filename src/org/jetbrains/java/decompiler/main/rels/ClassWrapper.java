@@ -4,6 +4,7 @@ package org.jetbrains.java.decompiler.main.rels;
 import org.jetbrains.java.decompiler.code.CodeConstants;
 import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.IdentityRenamerFactory;
 import org.jetbrains.java.decompiler.main.collectors.CounterContainer;
 import org.jetbrains.java.decompiler.main.collectors.VarNamesCollector;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
@@ -19,12 +20,16 @@ import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
 import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeoutException;
 
 public class ClassWrapper {
   private final StructClass classStruct;
-  private final Set<String> hiddenMembers = new HashSet<>();
+  private final Set<String> hiddenMembers = ConcurrentHashMap.newKeySet(); // also filled while methods are decompiled
   private final VBStyleCollection<Exprent, String> staticFieldInitializers = new VBStyleCollection<>();
   private final VBStyleCollection<Exprent, String> dynamicFieldInitializers = new VBStyleCollection<>();
   private final VBStyleCollection<MethodWrapper, String> methods = new VBStyleCollection<>();
@@ -41,140 +46,173 @@ public class ClassWrapper {
     int maxSec = Integer.parseInt(DecompilerContext.getProperty(IFernflowerPreferences.MAX_PROCESSING_METHOD).toString());
     boolean testMode = DecompilerContext.getOption(IFernflowerPreferences.UNIT_TEST_MODE);
 
-    for (StructMethod mt : classStruct.getMethods()) {
-      DecompilerContext.getLogger().startMethod(mt.getName() + " " + mt.getDescriptor());
+    if (shouldDecompileInParallel()) {
+      // methods only share the class, each one gets its own context and the wrappers are collected in declaration order
+      DecompilerContext classContext = DecompilerContext.getCurrentContext();
+      List<ForkJoinTask<MethodWrapper>> tasks = new ArrayList<>();
+      List<DecompilerContext> methodContexts = new ArrayList<>();
+      for (StructMethod mt : classStruct.getMethods()) {
+        DecompilerContext methodContext = DecompilerContext.forkMethodContext(classContext);
+        methodContexts.add(methodContext);
+        tasks.add(ForkJoinTask.adapt(() -> {
+          DecompilerContext outer = DecompilerContext.getCurrentContext();
+          DecompilerContext.setCurrentContext(methodContext);
+          try {
+            return decompileMethod(mt, maxSec, testMode);
+          }
+          finally {
+            DecompilerContext.setCurrentContext(outer);
+          }
+        }));
+      }
 
-      MethodDescriptor md = MethodDescriptor.parseDescriptor(mt, null);
-      VarProcessor varProc = new VarProcessor(mt, md);
-      DecompilerContext.startMethod(varProc);
+      ForkJoinTask.invokeAll(tasks);
+      for (int i = 0; i < tasks.size(); i++) {
+        MethodWrapper methodWrapper = tasks.get(i).join();
+        DecompilerContext.joinMethodContext(classContext, methodContexts.get(i));
+        methods.addWithKey(methodWrapper, InterpreterUtil.makeUniqueKey(methodWrapper.methodStruct.getName(), methodWrapper.methodStruct.getDescriptor()));
+      }
+    }
+    else {
+      for (StructMethod mt : classStruct.getMethods()) {
+        methods.addWithKey(decompileMethod(mt, maxSec, testMode), InterpreterUtil.makeUniqueKey(mt.getName(), mt.getDescriptor()));
+      }
+    }
 
-      VarNamesCollector vc = varProc.getVarNamesCollector();
-      CounterContainer counter = DecompilerContext.getCounterContainer();
+    DecompilerContext.getLogger().endClass();
+  }
 
-      RootStatement root = null;
+  // only worth it when the class is big and we already run on the pool of the decompiler, see StructContext.saveContext
+  private boolean shouldDecompileInParallel() {
+    if (!ForkJoinTask.inForkJoinPool() || ForkJoinTask.getPool().getParallelism() < 2) {
+      return false;
+    }
+    // other namers share state between a method and the lambdas it contains, which needs the declaration order
+    if (!(DecompilerContext.getNamingFactory() instanceof IdentityRenamerFactory)) {
+      return false;
+    }
 
-      boolean isError = false;
+    int methodsWithCode = 0;
+    long codeLength = 0;
+    for (StructMethod mt : classStruct.getMethods()) {
+      if (mt.containsCode()) {
+        methodsWithCode++;
+        codeLength += mt.getCodeLength();
+      }
+    }
+    int parallelCodeLength = Integer.parseInt(DecompilerContext.getProperty(IFernflowerPreferences.PARALLEL_METHODS_CODE_LENGTH).toString());
+    return methodsWithCode > 1 && codeLength >= parallelCodeLength;
+  }
 
-      try {
-        if (mt.containsCode()) {
-          if (maxSec == 0 || testMode) {
-            root = MethodProcessorRunnable.codeToJava(classStruct, mt, md, varProc);
-          }
-          else {
-            MethodProcessorRunnable mtProc = new MethodProcessorRunnable(classStruct, mt, md, varProc, DecompilerContext.getCurrentContext());
+  private MethodWrapper decompileMethod(StructMethod mt, int maxSec, boolean testMode) {
+    DecompilerContext.getLogger().startMethod(mt.getName() + " " + mt.getDescriptor());
 
-            Thread mtThread = new Thread(mtProc, "Java decompiler");
-            long stopAt = System.currentTimeMillis() + maxSec * 1000L;
+    MethodDescriptor md = MethodDescriptor.parseDescriptor(mt, null);
+    VarProcessor varProc = new VarProcessor(mt, md);
+    DecompilerContext.startMethod(varProc);
 
-            mtThread.start();
+    VarNamesCollector vc = varProc.getVarNamesCollector();
+    CounterContainer counter = DecompilerContext.getCounterContainer();
 
-            while (!mtProc.isFinished()) {
-              try {
-                synchronized (mtProc.lock) {
-                  mtProc.lock.wait(200);
-                }
-              }
-              catch (InterruptedException e) {
-                killThread(mtThread);
-                throw e;
-              }
-
-              if (System.currentTimeMillis() >= stopAt) {
-                String message = "Processing time limit exceeded for method " + mt.getName() + ", execution interrupted.";
-                DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.ERROR);
-                killThread(mtThread);
-                isError = true;
-                break;
-              }
-            }
+    RootStatement root = null;
 
-            if (!isError) {
-              root = mtProc.getResult();
-            }
-          }
+    boolean isError = false;
+
+    try {
+      if (mt.containsCode()) {
+        if (maxSec == 0 || testMode) {
+          root = MethodProcessorRunnable.codeToJava(classStruct, mt, md, varProc);
         }
         else {
-          boolean thisVar = !mt.hasModifier(CodeConstants.ACC_STATIC);
+          try {
+            root = MethodProcessorRunnable.codeToJava(classStruct, mt, md, varProc, maxSec);
+          }
+          catch (TimeoutException e) {
+            String message = "Processing time limit exceeded for method " + mt.getName() + ", execution interrupted.";
+            DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.ERROR);
+            isError = true;
+
+            // the cancelled run may still be touching these until it notices
+            varProc = new VarProcessor(mt, md);
+            DecompilerContext.startMethod(varProc);
+            counter = DecompilerContext.getCounterContainer();
+          }
+        }
+      }
+      else {
+        boolean thisVar = !mt.hasModifier(CodeConstants.ACC_STATIC);
+
+        int paramCount = 0;
+        if (thisVar) {
+          varProc.getThisVars().put(new VarVersionPair(0, 0), classStruct.qualifiedName);
+          paramCount = 1;
+        }
+        paramCount += md.params.length;
+
+        int varIndex = 0;
+        for (int i = 0; i < paramCount; i++) {
+          varProc.setVarName(new VarVersionPair(varIndex, 0), vc.getFreeName(varIndex));
 
-          int paramCount = 0;
           if (thisVar) {
-            varProc.getThisVars().put(new VarVersionPair(0, 0), classStruct.qualifiedName);
-            paramCount = 1;
-          }
-          paramCount += md.params.length;
-
-          int varIndex = 0;
-          for (int i = 0; i < paramCount; i++) {
-            varProc.setVarName(new VarVersionPair(varIndex, 0), vc.getFreeName(varIndex));
-
-            if (thisVar) {
-              if (i == 0) {
-                varIndex++;
-              }
-              else {
-                varIndex += md.params[i - 1].stackSize;
-              }
+            if (i == 0) {
+              varIndex++;
             }
             else {
-              varIndex += md.params[i].stackSize;
+              varIndex += md.params[i - 1].stackSize;
             }
           }
+          else {
+            varIndex += md.params[i].stackSize;
+          }
         }
       }
-      catch (Throwable t) {
-        String message = "Method " + mt.getName() + " " + mt.getDescriptor() + " couldn't be decompiled.";
-        DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.WARN, t);
-        isError = true;
-      }
+    }
+    catch (Throwable t) {
+      String message = "Method " + mt.getName() + " " + mt.getDescriptor() + " couldn't be decompiled.";
+      DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.WARN, t);
+      isError = true;
+    }
 
-      MethodWrapper methodWrapper = new MethodWrapper(root, varProc, mt, counter);
-      methodWrapper.decompiledWithErrors = isError;
-
-      methods.addWithKey(methodWrapper, InterpreterUtil.makeUniqueKey(mt.getName(), mt.getDescriptor()));
-
-      if (!isError) {
-        // rename vars so that no one has the same name as a field
-        VarNamesCollector namesCollector = new VarNamesCollector();
-        classStruct.getFields().forEach(f -> namesCollector.addName(f.getName()));
-        varProc.refreshVarNames(namesCollector);
-
-        // if debug information present and should be used
-        if (DecompilerContext.getOption(IFernflowerPreferences.USE_DEBUG_VAR_NAMES)) {
-          StructLocalVariableTableAttribute attr = mt.getLocalVariableAttr();
-          if (attr != null) {
-            // only param names here
-            varProc.setDebugVarNames(attr.getMapNames());
-
-            /*
-            // the rest is here
-            methodWrapper.getOrBuildGraph().iterateExprents(exprent -> {
-              List<Exprent> lst = exprent.getAllExprents(true);
-              lst.add(exprent);
-              lst.stream()
-                .filter(e -> e.type == Exprent.EXPRENT_VAR)
-                .forEach(e -> {
-                  VarExprent varExprent = (VarExprent)e;
-                  String name = varExprent.getDebugName(mt);
-                  if (name != null) {
-                    varProc.setVarName(varExprent.getVarVersionPair(), name);
-                  }
-                });
-              return 0;
-            });
-            */
-          }
+    MethodWrapper methodWrapper = new MethodWrapper(root, varProc, mt, counter);
+    methodWrapper.decompiledWithErrors = isError;
+
+    if (!isError) {
+      // rename vars so that no one has the same name as a field
+      VarNamesCollector namesCollector = new VarNamesCollector();
+      classStruct.getFields().forEach(f -> namesCollector.addName(f.getName()));
+      varProc.refreshVarNames(namesCollector);
+
+      // if debug information present and should be used
+      if (DecompilerContext.getOption(IFernflowerPreferences.USE_DEBUG_VAR_NAMES)) {
+        StructLocalVariableTableAttribute attr = mt.getLocalVariableAttr();
+        if (attr != null) {
+          // only param names here
+          varProc.setDebugVarNames(attr.getMapNames());
+
+          /*
+          // the rest is here
+          methodWrapper.getOrBuildGraph().iterateExprents(exprent -> {
+            List<Exprent> lst = exprent.getAllExprents(true);
+            lst.add(exprent);
+            lst.stream()
+              .filter(e -> e.type == Exprent.EXPRENT_VAR)
+              .forEach(e -> {
+                VarExprent varExprent = (VarExprent)e;
+                String name = varExprent.getDebugName(mt);
+                if (name != null) {
+                  varProc.setVarName(varExprent.getVarVersionPair(), name);
+                }
+              });
+            return 0;
+          });
+          */
         }
       }
-
-      DecompilerContext.getLogger().endMethod();
     }
 
-    DecompilerContext.getLogger().endClass();
-  }
+    DecompilerContext.getLogger().endMethod();
 
-  @SuppressWarnings("deprecation")
-  private static void killThread(Thread thread) {
-    thread.stop();
+    return methodWrapper;
   }
 
   public MethodWrapper getMethodWrapper(String name, String descriptor) {
@@ -11,6 +11,7 @@ import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.modules.code.DeadCodeHelper;
 import org.jetbrains.java.decompiler.modules.decompiler.*;
 import org.jetbrains.java.decompiler.modules.decompiler.deobfuscator.ExceptionDeobfuscator;
+import org.jetbrains.java.decompiler.modules.decompiler.deobfuscator.IrreducibleCFGDeobfuscator;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.AssignmentExprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.Exprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.MonitorExprent;
@@ -24,19 +25,35 @@ import org.jetbrains.java.decompiler.struct.StructMethod;
 import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 
 import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MethodProcessorRunnable implements Runnable {
-  public final Object lock = new Object();
+  // threads beyond one per decompiling thread, kept for runs that passed their time limit but have not yet noticed
+  private static final int ABANDONED_RUN_THREADS = 2;
+  private static final int QUEUED = 0, RUNNING = 1, DONE = 2, ABANDONED = 3;
+
+  private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+    Thread thread = new Thread(runnable, "Java decompiler");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private static final AtomicInteger ABANDONED_RUNS = new AtomicInteger();
+
+  static {
+    EXECUTOR.allowCoreThreadTimeOut(true);
+  }
 
   private final StructClass klass;
   private final StructMethod method;
   private final MethodDescriptor methodDescriptor;
   private final VarProcessor varProc;
-  private final DecompilerContext parentContext;
+  private final DecompilerContext context;
+  private final AtomicInteger state = new AtomicInteger(QUEUED);
+  private final CountDownLatch started = new CountDownLatch(1);
 
   private volatile RootStatement root;
   private volatile Throwable error;
-  private volatile boolean finished = false;
 
   public MethodProcessorRunnable(StructClass klass,
                                  StructMethod method,
@@ -47,7 +64,8 @@ public class MethodProcessorRunnable implements Runnable {
     this.method = method;
     this.methodDescriptor = methodDescriptor;
     this.varProc = varProc;
-    this.parentContext = parentContext;
+    // a cancelled run may outlive the wait for it until its next check, so it must not share the caller's context
+    this.context = DecompilerContext.forkMethodContext(parentContext);
   }
 
   @Override
@@ -55,8 +73,12 @@ public class MethodProcessorRunnable implements Runnable {
     error = null;
     root = null;
 
+    if (!state.compareAndSet(QUEUED, RUNNING)) {
+      return;
+    }
+    started.countDown();
     try {
-      DecompilerContext.setCurrentContext(parentContext);
+      DecompilerContext.setCurrentContext(context);
       root = codeToJava(klass, method, methodDescriptor, varProc);
     }
     catch (Throwable t) {
@@ -64,140 +86,165 @@ public class MethodProcessorRunnable implements Runnable {
     }
     finally {
       DecompilerContext.setCurrentContext(null);
-    }
-
-    finished = true;
-    synchronized (lock) {
-      lock.notifyAll();
+      if (!state.compareAndSet(RUNNING, DONE)) {
+        ABANDONED_RUNS.decrementAndGet();
+      }
     }
   }
 
-  public static RootStatement codeToJava(StructClass cl, StructMethod mt, MethodDescriptor md, VarProcessor varProc) throws IOException {
-    boolean isInitializer = CodeConstants.CLINIT_NAME.equals(mt.getName()); // for now static initializer only
-
-    mt.expandData(cl);
-    InstructionSequence seq = mt.getInstructionSequence();
-    ControlFlowGraph graph = new ControlFlowGraph(seq);
-
-    DeadCodeHelper.removeDeadBlocks(graph);
-    graph.inlineJsr(cl, mt);
-
-    // TODO: move to the start, before jsr inlining
-    DeadCodeHelper.connectDummyExitBlock(graph);
-
-    DeadCodeHelper.removeGotos(graph);
+  /**
+   * Runs {@link #codeToJava} on a pooled thread and waits at most {@code maxSec} seconds for it, counted from the start
+   * of the run. On timeout the run is interrupted and abandoned, it stops at its next {@link #checkCancelled()}; no
+   * thread is killed. The pool has a few threads more than {@code thr} for abandoned runs, a method that does not get
+   * one within {@code maxSec} seconds either is not processed.
+   * @throws TimeoutException if the time limit was exceeded
+   */
+  public static RootStatement codeToJava(StructClass cl, StructMethod mt, MethodDescriptor md, VarProcessor varProc, int maxSec) throws Throwable {
+    int threads = Integer.parseInt(DecompilerContext.getProperty(IFernflowerPreferences.THREADS).toString());
+    ensurePoolSize(Math.max(threads, 1) + ABANDONED_RUN_THREADS);
+
+    DecompilerContext parentContext = DecompilerContext.getCurrentContext();
+    MethodProcessorRunnable mtProc = new MethodProcessorRunnable(cl, mt, md, varProc, parentContext);
+    Future<?> future = EXECUTOR.submit(mtProc);
 
-    ExceptionDeobfuscator.removeCircularRanges(graph);
-
-    ExceptionDeobfuscator.restorePopRanges(graph);
-
-    if (DecompilerContext.getOption(IFernflowerPreferences.REMOVE_EMPTY_RANGES)) {
-      ExceptionDeobfuscator.removeEmptyRanges(graph);
-    }
-
-    if (DecompilerContext.getOption(IFernflowerPreferences.ENSURE_SYNCHRONIZED_MONITOR)) {
-      // special case: search for 'synchronized' ranges w/o monitorexit instruction (as generated by Kotlin and Scala)
-      DeadCodeHelper.extendSynchronizedRangeToMonitorexit(graph);
-    }
-
-    if (DecompilerContext.getOption(IFernflowerPreferences.NO_EXCEPTIONS_RETURN)) {
-      // special case: single return instruction outside of a protected range
-      DeadCodeHelper.incorporateValueReturns(graph);
+    try {
+      if (!mtProc.started.await(maxSec, TimeUnit.SECONDS)) {
+        String message = "No thread to process method " + mt.getName() + ", " + ABANDONED_RUNS.get() + " runs past their time limit are still running";
+        DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.WARN);
+        throw new TimeoutException();
+      }
+      future.get(maxSec, TimeUnit.SECONDS);
     }
-
-    //		ExceptionDeobfuscator.restorePopRanges(graph);
-    ExceptionDeobfuscator.insertEmptyExceptionHandlerBlocks(graph);
-
-    DeadCodeHelper.mergeBasicBlocks(graph);
-
-    DecompilerContext.getCounterContainer().setCounter(CounterContainer.VAR_COUNTER, mt.getLocalVariables());
-
-    if (ExceptionDeobfuscator.hasObfuscatedExceptions(graph)) {
-      DecompilerContext.getLogger().writeMessage("Heavily obfuscated exception ranges found!", IFernflowerLogger.Severity.WARN);
-      if (!ExceptionDeobfuscator.handleMultipleEntryExceptionRanges(graph)) {
-        DecompilerContext.getLogger().writeMessage("Found multiple entry exception ranges which could not be splitted", IFernflowerLogger.Severity.WARN);
+    catch (TimeoutException | InterruptedException ex) {
+      future.cancel(true);
+      if (mtProc.state.compareAndSet(RUNNING, ABANDONED)) {
+        ABANDONED_RUNS.incrementAndGet();
       }
-      ExceptionDeobfuscator.insertDummyExceptionHandlerBlocks(graph, mt.getBytecodeVersion());
+      throw ex;
     }
 
-    RootStatement root = DomHelper.parseGraph(graph, mt);
+    DecompilerContext.joinMethodContext(parentContext, mtProc.context);
+    return mtProc.getResult();
+  }
 
-    FinallyProcessor fProc = new FinallyProcessor(md, varProc);
-    while (fProc.iterateGraph(cl, mt, root, graph)) {
-      root = DomHelper.parseGraph(graph, mt);
+  private static synchronized void ensurePoolSize(int size) {
+    if (EXECUTOR.getMaximumPoolSize() < size) {
+      EXECUTOR.setMaximumPoolSize(size);
+      EXECUTOR.setCorePoolSize(size);
     }
+  }
 
-    // remove synchronized exception handler
-    // not until now because of comparison between synchronized statements in the finally cycle
-    DomHelper.removeSynchronizedHandler(root);
-
-    //		LabelHelper.lowContinueLabels(root, new HashSet<StatEdge>());
-
-    SequenceHelper.condenseSequences(root);
+  /**
+   * Cancellation point for the method time limit, to be called in loops that may run for long on irregular code.
+   */
+  public static void checkCancelled() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Processing of the method was cancelled");
+    }
+  }
 
-    ClearStructHelper.clearStatements(root);
+  public static RootStatement codeToJava(StructClass cl, StructMethod mt, MethodDescriptor md, VarProcessor varProc) throws IOException {
+    PassProfiler.MethodProfile profile = PassProfiler.startMethod(cl, mt);
+    try {
+      return codeToJava(cl, mt, md, varProc, profile);
+    }
+    finally {
+      profile.finish();
+    }
+  }
 
-    ExprProcessor proc = new ExprProcessor(md, varProc);
-    proc.processStatement(root, cl);
+  private static RootStatement codeToJava(StructClass cl,
+                                          StructMethod mt,
+                                          MethodDescriptor md,
+                                          VarProcessor varProc,
+                                          PassProfiler.MethodProfile profile) throws IOException {
+    boolean isInitializer = CodeConstants.CLINIT_NAME.equals(mt.getName()); // for now static initializer only
 
-    SequenceHelper.condenseSequences(root);
+    ControlFlowGraph graph = buildGraph(cl, mt, profile);
+    RootStatement root = buildStatements(cl, mt, md, varProc, graph, profile);
 
     StackVarsProcessor stackProc = new StackVarsProcessor();
 
     do {
+      checkCancelled();
       stackProc.simplifyStackVars(root, mt, cl);
+      profile.endPass("StackVarsProcessor.simplifyStackVars");
       varProc.setVarVersions(root);
+      profile.endPass("VarProcessor.setVarVersions");
     }
-    while (new PPandMMHelper(varProc).findPPandMM(root));
+    while (profile.endPass("PPandMMHelper.findPPandMM", new PPandMMHelper(varProc).findPPandMM(root)));
+
+    // the loop above leaves the stack variables simplified, which only has to be repeated once a pass changed the
+    // statements since, the passes report changes to anything but edge closures and labels
+    boolean changed = false;
 
     while (true) {
-      LabelHelper.cleanUpEdges(root);
+      checkCancelled();
+      changed |= profile.endPass("LabelHelper.cleanUpEdges", LabelHelper.cleanUpEdges(root));
 
       while (true) {
-        if (EliminateLoopsHelper.eliminateLoops(root, cl)) {
+        checkCancelled();
+        if (profile.endPass("EliminateLoopsHelper.eliminateLoops", EliminateLoopsHelper.eliminateLoops(root, cl))) {
+          changed = true;
           continue;
         }
 
-        MergeHelper.enhanceLoops(root);
+        changed |= profile.endPass("MergeHelper.enhanceLoops", MergeHelper.enhanceLoops(root));
 
-        if (LoopExtractHelper.extractLoops(root)) {
+        if (profile.endPass("LoopExtractHelper.extractLoops", LoopExtractHelper.extractLoops(root))) {
+          changed = true;
           continue;
         }
 
-        if (!IfHelper.mergeAllIfs(root)) {
+        if (!profile.endPass("IfHelper.mergeAllIfs", IfHelper.mergeAllIfs(root))) {
           break;
         }
+        changed = true;
       }
 
       if (DecompilerContext.getOption(IFernflowerPreferences.IDEA_NOT_NULL_ANNOTATION)) {
-        if (IdeaNotNullHelper.removeHardcodedChecks(root, mt)) {
+        if (profile.endPass("IdeaNotNullHelper.removeHardcodedChecks", IdeaNotNullHelper.removeHardcodedChecks(root, mt))) {
           SequenceHelper.condenseSequences(root);
+          profile.endPass("SequenceHelper.condenseSequences");
+          changed = true;
         }
       }
 
-      stackProc.simplifyStackVars(root, mt, cl);
-      varProc.setVarVersions(root);
+      if (changed) {
+        stackProc.simplifyStackVars(root, mt, cl);
+        profile.endPass("StackVarsProcessor.simplifyStackVars");
+        varProc.setVarVersions(root);
+        profile.endPass("VarProcessor.setVarVersions");
+        changed = false;
+      }
 
       LabelHelper.identifyLabels(root);
+      profile.endPass("LabelHelper.identifyLabels");
 
-      if (TryHelper.enhanceTryStats(root)) {
+      if (profile.endPass("TryHelper.enhanceTryStats", TryHelper.enhanceTryStats(root))) {
+        changed = true;
         continue;
       }
 
-      if (InlineSingleBlockHelper.inlineSingleBlocks(root)) {
+      if (profile.endPass("InlineSingleBlockHelper.inlineSingleBlocks", InlineSingleBlockHelper.inlineSingleBlocks(root))) {
+        changed = true;
         continue;
       }
 
       // this has to be done last so it does not screw up the formation of for loops
-      if (MergeHelper.makeDoWhileLoops(root)) {
+      if (profile.endPass("MergeHelper.makeDoWhileLoops", MergeHelper.makeDoWhileLoops(root))) {
+        changed = true;
         LabelHelper.cleanUpEdges(root);
+        profile.endPass("LabelHelper.cleanUpEdges");
         LabelHelper.identifyLabels(root);
+        profile.endPass("LabelHelper.identifyLabels");
       }
 
       // initializer may have at most one return point, so no transformation of method exits permitted
-      if (isInitializer || !ExitHelper.condenseExits(root)) {
+      if (isInitializer || !profile.endPass("ExitHelper.condenseExits", ExitHelper.condenseExits(root))) {
         break;
       }
+      changed = true;
 
       // FIXME: !!
       //if(!EliminateLoopsHelper.eliminateLoops(root)) {
@@ -206,37 +253,149 @@ public class MethodProcessorRunnable implements Runnable {
     }
 
     // this has to be done after all inlining is done so the case values do not get reverted
-    if (SwitchHelper.simplifySwitches(root)) {
+    if (profile.endPass("SwitchHelper.simplifySwitches", SwitchHelper.simplifySwitches(root))) {
       SequenceHelper.condenseSequences(root); // remove empty blocks
+      profile.endPass("SequenceHelper.condenseSequences");
     }
 
     ExitHelper.removeRedundantReturns(root);
+    profile.endPass("ExitHelper.removeRedundantReturns");
 
     SecondaryFunctionsHelper.identifySecondaryFunctions(root, varProc);
+    profile.endPass("SecondaryFunctionsHelper.identifySecondaryFunctions");
 
     cleanSynchronizedVar(root);
+    profile.endPass("MethodProcessorRunnable.cleanSynchronizedVar");
 
     varProc.setVarDefinitions(root);
+    profile.endPass("VarProcessor.setVarDefinitions");
 
     // must be the last invocation, because it makes the statement structure inconsistent
     // FIXME: new edge type needed
     LabelHelper.replaceContinueWithBreak(root);
+    profile.endPass("LabelHelper.replaceContinueWithBreak");
 
     mt.releaseResources();
 
     return root;
   }
 
+  /**
+   * Builds the control flow graph of {@code mt} and cleans it up for {@link DomHelper#parseGraph}.
+   */
+  public static ControlFlowGraph buildGraph(StructClass cl, StructMethod mt, PassProfiler.MethodProfile profile) throws IOException {
+    mt.expandData(cl);
+    profile.endPass("StructMethod.expandData");
+    InstructionSequence seq = mt.getInstructionSequence();
+    ControlFlowGraph graph = new ControlFlowGraph(seq);
+    profile.endPass("ControlFlowGraph");
+
+    DeadCodeHelper.removeDeadBlocks(graph);
+    profile.endPass("DeadCodeHelper.removeDeadBlocks");
+    graph.inlineJsr(cl, mt);
+    profile.endPass("ControlFlowGraph.inlineJsr");
+
+    // TODO: move to the start, before jsr inlining
+    DeadCodeHelper.connectDummyExitBlock(graph);
+    profile.endPass("DeadCodeHelper.connectDummyExitBlock");
+
+    DeadCodeHelper.removeGotos(graph);
+    profile.endPass("DeadCodeHelper.removeGotos");
+
+    ExceptionDeobfuscator.removeCircularRanges(graph);
+    profile.endPass("ExceptionDeobfuscator.removeCircularRanges");
+
+    ExceptionDeobfuscator.restorePopRanges(graph);
+    profile.endPass("ExceptionDeobfuscator.restorePopRanges");
+
+    if (DecompilerContext.getOption(IFernflowerPreferences.REMOVE_EMPTY_RANGES)) {
+      ExceptionDeobfuscator.removeEmptyRanges(graph);
+      profile.endPass("ExceptionDeobfuscator.removeEmptyRanges");
+    }
+
+    if (DecompilerContext.getOption(IFernflowerPreferences.ENSURE_SYNCHRONIZED_MONITOR)) {
+      // special case: search for 'synchronized' ranges w/o monitorexit instruction (as generated by Kotlin and Scala)
+      DeadCodeHelper.extendSynchronizedRangeToMonitorexit(graph);
+      profile.endPass("DeadCodeHelper.extendSynchronizedRangeToMonitorexit");
+    }
+
+    if (DecompilerContext.getOption(IFernflowerPreferences.NO_EXCEPTIONS_RETURN)) {
+      // special case: single return instruction outside of a protected range
+      DeadCodeHelper.incorporateValueReturns(graph);
+      profile.endPass("DeadCodeHelper.incorporateValueReturns");
+    }
+
+    //		ExceptionDeobfuscator.restorePopRanges(graph);
+    ExceptionDeobfuscator.insertEmptyExceptionHandlerBlocks(graph);
+    profile.endPass("ExceptionDeobfuscator.insertEmptyExceptionHandlerBlocks");
+
+    DeadCodeHelper.mergeBasicBlocks(graph);
+    profile.endPass("DeadCodeHelper.mergeBasicBlocks");
+
+    DecompilerContext.getCounterContainer().setCounter(CounterContainer.VAR_COUNTER, mt.getLocalVariables());
+
+    if (ExceptionDeobfuscator.hasObfuscatedExceptions(graph)) {
+      DecompilerContext.getLogger().writeMessage("Heavily obfuscated exception ranges found!", IFernflowerLogger.Severity.WARN);
+      if (!ExceptionDeobfuscator.handleMultipleEntryExceptionRanges(graph)) {
+        DecompilerContext.getLogger().writeMessage("Found multiple entry exception ranges which could not be splitted", IFernflowerLogger.Severity.WARN);
+      }
+      ExceptionDeobfuscator.insertDummyExceptionHandlerBlocks(graph, mt.getBytecodeVersion());
+    }
+    profile.endPass("ExceptionDeobfuscator.handleObfuscatedExceptions");
+
+    return graph;
+  }
+
+  /**
+   * Builds the statements of {@code mt} from {@code graph}, with finally blocks restored and expressions processed.
+   */
+  public static RootStatement buildStatements(StructClass cl,
+                                              StructMethod mt,
+                                              MethodDescriptor md,
+                                              VarProcessor varProc,
+                                              ControlFlowGraph graph,
+                                              PassProfiler.MethodProfile profile) {
+    // the graph is parsed again after each finally block, node splitting may copy as much for all parses as for one
+    IrreducibleCFGDeobfuscator.SplitBudget splitBudget = new IrreducibleCFGDeobfuscator.SplitBudget(graph);
+    RootStatement root = DomHelper.parseGraph(graph, mt, splitBudget);
+    profile.endPass("DomHelper.parseGraph");
+
+    FinallyProcessor fProc = new FinallyProcessor(md, varProc);
+    while (profile.endPass("FinallyProcessor.iterateGraph", fProc.iterateGraph(cl, mt, root, graph))) {
+      checkCancelled();
+      root = DomHelper.parseGraph(graph, mt, splitBudget);
+      profile.endPass("DomHelper.parseGraph");
+    }
+
+    // remove synchronized exception handler
+    // not until now because of comparison between synchronized statements in the finally cycle
+    DomHelper.removeSynchronizedHandler(root);
+    profile.endPass("DomHelper.removeSynchronizedHandler");
+
+    //		LabelHelper.lowContinueLabels(root, new HashSet<StatEdge>());
+
+    SequenceHelper.condenseSequences(root);
+    profile.endPass("SequenceHelper.condenseSequences");
+
+    ClearStructHelper.clearStatements(root);
+    profile.endPass("ClearStructHelper.clearStatements");
+
+    ExprProcessor proc = new ExprProcessor(md, varProc);
+    proc.processStatement(root, cl);
+    profile.endPass("ExprProcessor.processStatement");
+
+    SequenceHelper.condenseSequences(root);
+    profile.endPass("SequenceHelper.condenseSequences");
+
+    return root;
+  }
+
   public RootStatement getResult() throws Throwable {
     Throwable t = error;
     if (t != null) throw t;
     return root;
   }
 
-  public boolean isFinished() {
-    return finished;
-  }
-
   public static void cleanSynchronizedVar(Statement stat) {
     for (Statement st : stat.getStats()) {
       cleanSynchronizedVar(st);
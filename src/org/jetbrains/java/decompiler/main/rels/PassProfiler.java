@@ -0,0 +1,157 @@
+package org.jetbrains.java.decompiler.main.rels;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.jetbrains.java.decompiler.struct.StructMethod;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+/**
+ * Collects wall time, allocated bytes and invocation counts of the passes of {@link MethodProcessorRunnable#codeToJava}
+ * over a whole run, see {@link org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences#PROFILE_PASSES}.
+ */
+public final class PassProfiler {
+  private static final int TOP_METHODS = 20;
+  private static final MethodProfile DISABLED = new MethodProfile(null, null);
+
+  private final com.sun.management.ThreadMXBean allocations;
+  private final Map<String, PassStats> passes = new HashMap<>();
+  private final PriorityQueue<MethodProfile> slowest = new PriorityQueue<>(Comparator.comparingLong(m -> m.time));
+  private int methodCount;
+  private long totalTime;
+
+  public PassProfiler() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+      allocations = (com.sun.management.ThreadMXBean)bean;
+      allocations.setThreadAllocatedMemoryEnabled(true);
+    }
+    else {
+      allocations = null;
+    }
+  }
+
+  /**
+   * @return the profile of a method about to be processed on the current thread, doing nothing if profiling is off
+   */
+  public static MethodProfile startMethod(StructClass cl, StructMethod mt) {
+    PassProfiler profiler = (PassProfiler)DecompilerContext.getProperty(DecompilerContext.PASS_PROFILER);
+    if (profiler == null) {
+      return DISABLED;
+    }
+    return new MethodProfile(profiler, cl.qualifiedName + "." + mt.getName() + mt.getDescriptor());
+  }
+
+  private long allocatedBytes() {
+    return allocations != null ? allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+  }
+
+  private synchronized void add(MethodProfile method) {
+    methodCount++;
+    totalTime += method.time;
+
+    for (Map.Entry<String, PassStats> entry : method.passes.entrySet()) {
+      PassStats stats = entry.getValue();
+      PassStats total = passes.computeIfAbsent(entry.getKey(), k -> new PassStats());
+      total.time += stats.time;
+      total.bytes += stats.bytes;
+      total.invocations += stats.invocations;
+      total.maxInvocations = Math.max(total.maxInvocations, stats.invocations);
+    }
+
+    slowest.add(method);
+    if (slowest.size() > TOP_METHODS) {
+      slowest.poll();
+    }
+  }
+
+  public synchronized String getReport() {
+    String separator = DecompilerContext.getNewLineSeparator();
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("Pass profile of %d methods, %.1f ms in total", methodCount, totalTime / 1e6)).append(separator);
+    report.append(String.format("  %-60s %12s %7s %12s %10s %12s", "pass", "time (ms)", "%", "alloc (MB)", "calls", "max/method"));
+
+    List<Map.Entry<String, PassStats>> sortedPasses = new ArrayList<>(passes.entrySet());
+    sortedPasses.sort(Comparator.comparingLong((Map.Entry<String, PassStats> e) -> e.getValue().time).reversed());
+    for (Map.Entry<String, PassStats> entry : sortedPasses) {
+      PassStats stats = entry.getValue();
+      report.append(separator).append(String.format("  %-60s %12.1f %7.1f %12s %10d %12d",
+        entry.getKey(), stats.time / 1e6, totalTime == 0 ? 0.0 : stats.time * 100.0 / totalTime,
+        allocations != null ? String.format("%.1f", stats.bytes / (1024.0 * 1024.0)) : "n/a",
+        stats.invocations, stats.maxInvocations));
+    }
+
+    List<MethodProfile> methods = new ArrayList<>(slowest);
+    methods.sort(Comparator.comparingLong((MethodProfile m) -> m.time).reversed());
+    report.append(separator).append("Slowest methods:");
+    for (MethodProfile method : methods) {
+      Map.Entry<String, PassStats> top = Collections.max(method.passes.entrySet(), Comparator.comparingLong(e -> e.getValue().time));
+      report.append(separator).append(String.format("  %12.1f ms  %s (mostly %s, %.1f ms)",
+        method.time / 1e6, method.name, top.getKey(), top.getValue().time / 1e6));
+    }
+
+    return report.toString();
+  }
+
+  /**
+   * Passes of a single method. Each {@link #endPass} call charges the time and allocations since the previous one to the
+   * named pass, so it has to follow the pass directly.
+   */
+  public static final class MethodProfile {
+    private final PassProfiler profiler;
+    private final String name;
+    private final Map<String, PassStats> passes = new LinkedHashMap<>();
+    private final long start;
+    private long mark;
+    private long bytesMark;
+    private long time;
+
+    private MethodProfile(PassProfiler profiler, String name) {
+      this.profiler = profiler;
+      this.name = name;
+      this.start = this.mark = profiler != null ? System.nanoTime() : 0;
+      this.bytesMark = profiler != null ? profiler.allocatedBytes() : 0;
+    }
+
+    public void endPass(String pass) {
+      if (profiler == null) {
+        return;
+      }
+
+      long now = System.nanoTime();
+      long bytes = profiler.allocatedBytes();
+      PassStats stats = passes.computeIfAbsent(pass, k -> new PassStats());
+      stats.time += now - mark;
+      stats.bytes += bytes - bytesMark;
+      stats.invocations++;
+      mark = now;
+      bytesMark = bytes;
+    }
+
+    /**
+     * {@link #endPass} for passes reporting whether they changed anything.
+     * @return {@code result}
+     */
+    public boolean endPass(String pass, boolean result) {
+      endPass(pass);
+      return result;
+    }
+
+    public void finish() {
+      if (profiler == null || passes.isEmpty()) {
+        return;
+      }
+      time = System.nanoTime() - start;
+      profiler.add(this);
+    }
+  }
+
+  private static final class PassStats {
+    private long time;
+    private long bytes;
+    private int invocations;
+    private int maxInvocations;
+  }
+}
@@ -6,6 +6,7 @@ import org.jetbrains.java.decompiler.code.cfg.ControlFlowGraph;
 import org.jetbrains.java.decompiler.code.cfg.ExceptionRangeCFG;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.main.rels.MethodProcessorRunnable;
 import org.jetbrains.java.decompiler.modules.decompiler.decompose.FastExtendedPostdominanceHelper;
 import org.jetbrains.java.decompiler.modules.decompiler.deobfuscator.IrreducibleCFGDeobfuscator;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.*;
@@ -123,6 +124,7 @@ public final class DomHelper {
     }
 
     do {
+      MethodProcessorRunnable.checkCancelled();
 
       for (Statement stat : lstStats) {
 
@@ -192,10 +194,14 @@ public final class DomHelper {
   }
 
   public static RootStatement parseGraph(ControlFlowGraph graph, StructMethod mt) {
+    return parseGraph(graph, mt, new IrreducibleCFGDeobfuscator.SplitBudget(graph));
+  }
+
+  public static RootStatement parseGraph(ControlFlowGraph graph, StructMethod mt, IrreducibleCFGDeobfuscator.SplitBudget splitBudget) {
 
     RootStatement root = graphToStatement(graph);
 
-    if (!processStatement(root, new LinkedHashMap<>())) {
+    if (!processStatement(root, new LinkedHashMap<>(), splitBudget)) {
       DotExporter.toDotFile(graph, mt, "parseGraphFail", true);
       throw new RuntimeException("parsing failure!");
     }
@@ -291,7 +297,8 @@ public final class DomHelper {
     }
   }
 
-  private static boolean processStatement(Statement general, HashMap<Integer, Set<Integer>> mapExtPost) {
+  private static boolean processStatement(Statement general, HashMap<Integer, Set<Integer>> mapExtPost,
+                                          IrreducibleCFGDeobfuscator.SplitBudget splitBudget) {
 
     if (general.type == Statement.TYPE_ROOT) {
       Statement stat = general.getFirst();
@@ -299,7 +306,7 @@ public final class DomHelper {
         return true;
       }
       else {
-        boolean complete = processStatement(stat, mapExtPost);
+        boolean complete = processStatement(stat, mapExtPost, splitBudget);
         if (complete) {
           // replace general purpose statement with simple one
           general.replaceStatement(stat, stat.getFirst());
@@ -324,7 +331,7 @@ public final class DomHelper {
 
           // take care of irreducible control flow graphs
           if (IrreducibleCFGDeobfuscator.isStatementIrreducible(general)) {
-            if (!IrreducibleCFGDeobfuscator.splitIrreducibleNode(general)) {
+            if (!IrreducibleCFGDeobfuscator.splitIrreducibleNode(general, splitBudget)) {
               DecompilerContext.getLogger().writeMessage("Irreducible statement cannot be decomposed!", IFernflowerLogger.Severity.ERROR);
               break;
             }
@@ -349,6 +356,7 @@ public final class DomHelper {
           boolean forceall = i != 0;
 
           while (true) {
+            MethodProcessorRunnable.checkCancelled();
 
             if (findSimpleStatements(general, mapExtPost)) {
               reducibility = 0;
@@ -361,7 +369,7 @@ public final class DomHelper {
             Statement stat = findGeneralStatement(general, forceall, mapExtPost);
 
             if (stat != null) {
-              boolean complete = processStatement(stat, general.getFirst() == stat ? mapExtPost : new HashMap<>());
+              boolean complete = processStatement(stat, general.getFirst() == stat ? mapExtPost : new HashMap<>(), splitBudget);
 
               if (complete) {
                 // replace general purpose statement with simple one
@@ -50,6 +50,9 @@ public class FinallyProcessor {
   public boolean iterateGraph(StructClass cl, StructMethod mt, RootStatement root, ControlFlowGraph graph) {
     int bytecodeVersion = mt.getBytecodeVersion();
 
+    // getFinallyInformation leaves the expressions in the statements, so they have to be parsed again anyway
+    boolean analysed = false;
+
     LinkedList<Statement> stack = new LinkedList<>();
     stack.add(root);
 
@@ -77,7 +80,9 @@ public class FinallyProcessor {
           Record inf = getFinallyInformation(cl, mt, root, fin);
 
           if (inf == null) { // inconsistent finally
+            // the graph is left as it is, so the remaining catchalls can be examined on the same statements
             catchallBlockIDs.put(handler.id, null);
+            analysed = true;
           }
           else {
             if (DecompilerContext.getOption(IFernflowerPreferences.FINALLY_DEINLINE) && verifyFinallyEx(graph, fin, inf)) {
@@ -93,16 +98,16 @@ public class FinallyProcessor {
             DeadCodeHelper.removeDeadBlocks(graph); // e.g. multiple return blocks after a nested finally
             DeadCodeHelper.removeEmptyBlocks(graph);
             DeadCodeHelper.mergeBasicBlocks(graph);
-          }
 
-          return true;
+            return true;
+          }
         }
       }
 
       stack.addAll(stat.getStats());
     }
 
-    return false;
+    return analysed;
   }
 
   private static final class Record {
@@ -11,17 +11,22 @@ import java.util.Map.Entry;
 public final class LabelHelper {
 
 
-  public static void cleanUpEdges(RootStatement root) {
+  /**
+   * @return true if an edge was removed or got another destination, changes to closures and labels are not reported
+   */
+  public static boolean cleanUpEdges(RootStatement root) {
 
     resetAllEdges(root);
 
-    removeNonImmediateEdges(root);
+    boolean changed = removeNonImmediateEdges(root);
 
     liftClosures(root);
 
-    lowContinueLabels(root, new LinkedHashSet<>());
+    changed |= lowContinueLabels(root, new LinkedHashSet<>());
 
     lowClosures(root);
+
+    return changed;
   }
 
   public static void identifyLabels(RootStatement root) {
@@ -72,20 +77,28 @@ public final class LabelHelper {
     }
   }
 
-  private static void removeNonImmediateEdges(Statement stat) {
+  private static boolean removeNonImmediateEdges(Statement stat) {
+    boolean changed = false;
 
     for (Statement st : stat.getStats()) {
-      removeNonImmediateEdges(st);
+      changed |= removeNonImmediateEdges(st);
     }
 
     if (!stat.hasBasicSuccEdge()) {
       for (StatEdge edge : stat.getSuccessorEdges(StatEdge.TYPE_CONTINUE | StatEdge.TYPE_BREAK)) {
         stat.removeSuccessor(edge);
+        changed = true;
       }
     }
+
+    return changed;
   }
 
-  public static void lowContinueLabels(Statement stat, HashSet<StatEdge> edges) {
+  /**
+   * @return true if a continue edge got another destination
+   */
+  public static boolean lowContinueLabels(Statement stat, HashSet<StatEdge> edges) {
+    boolean changed = false;
 
     boolean ok = (stat.type != Statement.TYPE_DO);
     if (!ok) {
@@ -102,6 +115,7 @@ public final class LabelHelper {
     if (ok && stat.type == Statement.TYPE_DO) {
       for (StatEdge edge : edges) {
         if (stat.containsStatementStrict(edge.getSource())) {
+          changed |= edge.getDestination() != stat;
 
           edge.getDestination().removePredecessor(edge);
           edge.getSource().changeEdgeNode(Statement.DIRECTION_FORWARD, edge, stat);
@@ -114,12 +128,14 @@ public final class LabelHelper {
 
     for (Statement st : stat.getStats()) {
       if (st == stat.getFirst()) {
-        lowContinueLabels(st, edges);
+        changed |= lowContinueLabels(st, edges);
       }
       else {
-        lowContinueLabels(st, new LinkedHashSet<>());
+        changed |= lowContinueLabels(st, new LinkedHashSet<>());
       }
     }
+
+    return changed;
   }
 
   public static void lowClosures(Statement stat) {
@@ -19,9 +19,15 @@ import java.util.List;
 import java.util.Set;
 
 public final class MergeHelper {
-  public static void enhanceLoops(Statement root) {
-    while (enhanceLoopsRec(root)) /**/;
-    SequenceHelper.condenseSequences(root);
+  /**
+   * @return true if any loop or sequence was changed
+   */
+  public static boolean enhanceLoops(Statement root) {
+    boolean changed = false;
+    while (enhanceLoopsRec(root)) {
+      changed = true;
+    }
+    return SequenceHelper.condenseSequences(root) || changed;
   }
 
   private static boolean enhanceLoopsRec(Statement stat) {
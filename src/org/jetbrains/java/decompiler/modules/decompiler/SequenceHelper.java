@@ -16,11 +16,15 @@ import java.util.List;
 public final class SequenceHelper {
 
 
-  public static void condenseSequences(Statement root) {
-    condenseSequencesRec(root);
+  /**
+   * @return true if any statement was changed
+   */
+  public static boolean condenseSequences(Statement root) {
+    return condenseSequencesRec(root);
   }
 
-  private static void condenseSequencesRec(Statement stat) {
+  private static boolean condenseSequencesRec(Statement stat) {
+    boolean changed = false;
 
     if (stat.type == Statement.TYPE_SEQUENCE) {
 
@@ -33,7 +37,7 @@ public final class SequenceHelper {
         Statement st = lst.get(i);
         if (st.type == Statement.TYPE_SEQUENCE) {
 
-          removeEmptyStatements((SequenceStatement)st);
+          changed |= removeEmptyStatements((SequenceStatement)st);
 
           if (i == lst.size() - 1 || isSequenceDisbandable(st, lst.get(i + 1))) {
             // move predecessors
@@ -90,13 +94,14 @@ public final class SequenceHelper {
         stat.getParent().replaceStatement(stat, sequence);
 
         stat = sequence;
+        changed = true;
       }
     }
 
     // sequence consisting of one statement -> disband
     if (stat.type == Statement.TYPE_SEQUENCE) {
 
-      removeEmptyStatements((SequenceStatement)stat);
+      changed |= removeEmptyStatements((SequenceStatement)stat);
 
       if (stat.getStats().size() == 1) {
 
@@ -120,6 +125,7 @@ public final class SequenceHelper {
         if (ok) {
           stat.getParent().replaceStatement(stat, st);
           stat = st;
+          changed = true;
         }
       }
     }
@@ -130,6 +136,7 @@ public final class SequenceHelper {
       for (Statement st : stat.getStats()) {
         if ((st.getStats().isEmpty() || st.getExprents() != null) && st.type != Statement.TYPE_BASICBLOCK) {
           destroyAndFlattenStatement(st);
+          changed = true;
           continue outer;
         }
       }
@@ -138,8 +145,10 @@ public final class SequenceHelper {
 
     // recursion
     for (int i = 0; i < stat.getStats().size(); i++) {
-      condenseSequencesRec(stat.getStats().get(i));
+      changed |= condenseSequencesRec(stat.getStats().get(i));
     }
+
+    return changed;
   }
 
   private static boolean isSequenceDisbandable(Statement block, Statement next) {
@@ -161,13 +170,13 @@ public final class SequenceHelper {
     return true;
   }
 
-  private static void removeEmptyStatements(SequenceStatement sequence) {
+  private static boolean removeEmptyStatements(SequenceStatement sequence) {
 
     if (sequence.getStats().size() <= 1) {
-      return;
+      return false;
     }
 
-    mergeFlatStatements(sequence);
+    boolean changed = mergeFlatStatements(sequence);
 
     while (true) {
 
@@ -219,12 +228,15 @@ public final class SequenceHelper {
       if (!found) {
         break;
       }
+      changed = true;
     }
 
     sequence.setFirst(sequence.getStats().get(0));
+    return changed;
   }
 
-  private static void mergeFlatStatements(SequenceStatement sequence) {
+  private static boolean mergeFlatStatements(SequenceStatement sequence) {
+    boolean changed = false;
 
     while (true) {
 
@@ -258,7 +270,10 @@ public final class SequenceHelper {
       if (!found) {
         break;
       }
+      changed = true;
     }
+
+    return changed;
   }
 
   private static Statement getFirstExprentlist(Statement stat) {
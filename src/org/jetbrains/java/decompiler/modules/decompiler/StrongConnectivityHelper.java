@@ -2,87 +2,164 @@
 package org.jetbrains.java.decompiler.modules.decompiler;
 
 import org.jetbrains.java.decompiler.modules.decompiler.stats.Statement;
-import org.jetbrains.java.decompiler.util.ListStack;
 
 import java.util.*;
 
+/**
+ * Strongly connected components of the regular edges between statements, found with an iterative version of Tarjan's
+ * algorithm. The state of the statements is kept in arrays indexed by their position in the analysed collection.
+ */
 public class StrongConnectivityHelper {
-  private final List<List<Statement>> components;
-  private final Set<Statement> setProcessed;
+  private final List<List<Statement>> components = new ArrayList<>();
 
-  private ListStack<Statement> lstack;
+  // restricts the search to the analysed statements, null to follow edges to any statement
+  private final Map<Integer, Integer> mapRestriction;
+  private final Map<Integer, Integer> mapIndices;
+  private final List<Statement> stats;
+  private boolean[] processed;
+
+  private final List<Statement> lstack = new ArrayList<>();
+  private final List<Frame> frames = new ArrayList<>();
+  private final List<Statement> tlist = new ArrayList<>();
   private int ncounter;
-  private Set<Statement> tset;
-  private Map<Statement, Integer> dfsnummap;
-  private Map<Statement, Integer> lowmap;
+  private int tree;
+  private int[] tset; // number of the tree a statement was discovered in
+  private int[] dfsnum;
+  private int[] low;
 
   public StrongConnectivityHelper(Statement stat) {
-    components = new ArrayList<>();
-    setProcessed = new HashSet<>();
+    this(stat.getFirst(), stat.getStats(), false);
+  }
+
+  /**
+   * Components of the subgraph of {@code stats}, edges leaving it are ignored.
+   */
+  public StrongConnectivityHelper(Statement first, Collection<? extends Statement> stats) {
+    this(first, stats, true);
+  }
+
+  private StrongConnectivityHelper(Statement first, Collection<? extends Statement> colStats, boolean restrict) {
+    stats = new ArrayList<>(colStats);
+    mapIndices = new HashMap<>();
+    for (int i = 0; i < stats.size(); i++) {
+      mapIndices.put(stats.get(i).id, i);
+    }
+    mapRestriction = restrict ? mapIndices : null;
+
+    int size = stats.size();
+    processed = new boolean[size];
+    tset = new int[size];
+    dfsnum = new int[size];
+    low = new int[size];
 
-    visitTree(stat.getFirst());
+    visitTree(first);
 
-    for (Statement st : stat.getStats()) {
-      if (!setProcessed.contains(st) && st.getPredecessorEdges(Statement.STATEDGE_DIRECT_ALL).isEmpty()) {
+    for (Statement st : colStats) {
+      if (!processed[getIndex(st)] && st.getPredecessorEdges(Statement.STATEDGE_DIRECT_ALL).isEmpty()) {
         visitTree(st);
       }
     }
 
     // should not find any more nodes! FIXME: ??
-    for (Statement st : stat.getStats()) {
-      if (!setProcessed.contains(st)) {
+    for (Statement st : colStats) {
+      if (!processed[getIndex(st)]) {
         visitTree(st);
       }
     }
   }
 
+  private int getIndex(Statement stat) {
+    Integer index = mapIndices.get(stat.id);
+    if (index != null) {
+      return index;
+    }
+
+    // statement outside of the analysed collection
+    int newIndex = stats.size();
+    mapIndices.put(stat.id, newIndex);
+    stats.add(stat);
+    if (newIndex == processed.length) {
+      int size = newIndex * 2 + 1;
+      processed = Arrays.copyOf(processed, size);
+      tset = Arrays.copyOf(tset, size);
+      dfsnum = Arrays.copyOf(dfsnum, size);
+      low = Arrays.copyOf(low, size);
+    }
+    return newIndex;
+  }
+
   private void visitTree(Statement stat) {
-    lstack = new ListStack<>();
+    lstack.clear();
+    tlist.clear();
     ncounter = 0;
-    tset = new HashSet<>();
-    dfsnummap = new HashMap<>();
-    lowmap = new HashMap<>();
+    tree++;
 
     visit(stat);
 
-    setProcessed.addAll(tset);
-    setProcessed.add(stat);
+    for (Statement st : tlist) {
+      processed[getIndex(st)] = true;
+    }
+    processed[getIndex(stat)] = true;
   }
 
-  private void visit(Statement stat) {
-    lstack.push(stat);
-    dfsnummap.put(stat, ncounter);
-    lowmap.put(stat, ncounter);
-    ncounter++;
-
-    List<Statement> lstSuccs = stat.getNeighbours(StatEdge.TYPE_REGULAR, Statement.DIRECTION_FORWARD); // TODO: set?
-    lstSuccs.removeAll(setProcessed);
-
-    for (Statement succ : lstSuccs) {
-      int secvalue;
+  // The root of a tree is not marked as discovered, so an edge back to it visits it a second time. This is kept from
+  // the recursive implementation, as the components of loops at the root and their order depend on it.
+  private void visit(Statement root) {
+    enter(root);
+
+    while (!frames.isEmpty()) {
+      Frame frame = frames.get(frames.size() - 1);
+
+      if (frame.next < frame.succs.size()) {
+        Statement succ = frame.succs.get(frame.next++);
+        if (mapRestriction != null && !mapRestriction.containsKey(succ.id)) {
+          continue;
+        }
+
+        int succIndex = getIndex(succ);
+        if (processed[succIndex]) {
+          continue;
+        }
+
+        if (tset[succIndex] == tree) {
+          low[frame.node] = Math.min(low[frame.node], dfsnum[succIndex]);
+        }
+        else {
+          tset[succIndex] = tree;
+          tlist.add(succ);
+          enter(succ);
+        }
+        continue;
+      }
 
-      if (tset.contains(succ)) {
-        secvalue = dfsnummap.get(succ);
+      int node = frame.node;
+      if (low[node] == dfsnum[node]) {
+        List<Statement> lst = new ArrayList<>();
+        Statement v;
+        do {
+          v = lstack.remove(lstack.size() - 1);
+          lst.add(v);
+        }
+        while (v != frame.stat);
+        components.add(lst);
       }
-      else {
-        tset.add(succ);
-        visit(succ);
-        secvalue = lowmap.get(succ);
+
+      frames.remove(frames.size() - 1);
+      if (!frames.isEmpty()) {
+        Frame parent = frames.get(frames.size() - 1);
+        low[parent.node] = Math.min(low[parent.node], low[node]);
       }
-      lowmap.put(stat, Math.min(lowmap.get(stat), secvalue));
     }
+  }
 
+  private void enter(Statement stat) {
+    int node = getIndex(stat);
+    lstack.add(stat);
+    dfsnum[node] = ncounter;
+    low[node] = ncounter;
+    ncounter++;
 
-    if (lowmap.get(stat).intValue() == dfsnummap.get(stat).intValue()) {
-      List<Statement> lst = new ArrayList<>();
-      Statement v;
-      do {
-        v = lstack.pop();
-        lst.add(v);
-      }
-      while (v != stat);
-      components.add(lst);
-    }
+    frames.add(new Frame(stat, node, stat.getNeighbours(StatEdge.TYPE_REGULAR, Statement.DIRECTION_FORWARD)));
   }
 
   public static boolean isExitComponent(List<? extends Statement> lst) {
@@ -112,4 +189,17 @@ public class StrongConnectivityHelper {
   public List<List<Statement>> getComponents() {
     return components;
   }
+
+  private static final class Frame {
+    private final Statement stat;
+    private final int node;
+    private final List<Statement> succs;
+    private int next;
+
+    private Frame(Statement stat, int node, List<Statement> succs) {
+      this.stat = stat;
+      this.node = node;
+      this.succs = succs;
+    }
+  }
 }
\ No newline at end of file
@@ -3,15 +3,23 @@ package org.jetbrains.java.decompiler.modules.decompiler.decompose;
 
 import org.jetbrains.java.decompiler.modules.decompiler.StatEdge;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.Statement;
-import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
-import java.util.List;
+import java.util.*;
 
+/**
+ * Immediate dominators of the statements of {@link #statement}, computed with the algorithm of Cooper, Harvey and Kennedy
+ * over the indices of the statements in reverse postorder.
+ */
 public class DominatorEngine {
 
   private final Statement statement;
 
-  private final VBStyleCollection<Integer, Integer> colOrderedIDoms = new VBStyleCollection<>();
+  // statement ids in reverse postorder
+  private final List<Integer> orderedIds = new ArrayList<>();
+  private final Map<Integer, Integer> mapIndices = new HashMap<>();
+
+  // reverse postorder index of the immediate dominator, -1 if unknown
+  private int[] idoms;
 
 
   public DominatorEngine(Statement statement) {
@@ -25,90 +33,107 @@ public class DominatorEngine {
   private void orderStatements() {
 
     for (Statement stat : statement.getReversePostOrderList()) {
-      colOrderedIDoms.addWithKey(null, stat.id);
+      mapIndices.put(stat.id, orderedIds.size());
+      orderedIds.add(stat.id);
     }
   }
 
-  private static Integer getCommonIDom(Integer key1, Integer key2, VBStyleCollection<Integer, Integer> orderedIDoms) {
+  private static int getCommonIDom(int index1, int index2, int[] idoms) {
 
-    if (key1 == null) {
-      return key2;
-    }
-    else if (key2 == null) {
-      return key1;
+    if (index1 < 0) {
+      return index2;
     }
 
-    int index1 = orderedIDoms.getIndexByKey(key1);
-    int index2 = orderedIDoms.getIndexByKey(key2);
-
     while (index1 != index2) {
       if (index1 > index2) {
-        key1 = orderedIDoms.getWithKey(key1);
-        index1 = orderedIDoms.getIndexByKey(key1);
+        index1 = idoms[index1];
       }
       else {
-        key2 = orderedIDoms.getWithKey(key2);
-        index2 = orderedIDoms.getIndexByKey(key2);
+        index2 = idoms[index2];
       }
     }
 
-    return key1;
+    return index1;
   }
 
   private void calcIDoms() {
 
     orderStatements();
 
-    colOrderedIDoms.putWithKey(statement.getFirst().id, statement.getFirst().id);
-
-    // exclude first statement
-    List<Integer> lstIds = colOrderedIDoms.getLstKeys().subList(1, colOrderedIDoms.getLstKeys().size());
-
-    while (true) {
+    int count = orderedIds.size();
+
+    int[][] preds = new int[count][];
+    for (int i = 0; i < count; i++) {
+      List<StatEdge> edges = statement.getStats().getWithKey(orderedIds.get(i)).getAllPredecessorEdges();
+      int[] indices = new int[edges.size()];
+      int size = 0;
+      for (StatEdge edge : edges) {
+        Integer index = mapIndices.get(edge.getSource().id);
+        if (index != null) {
+          indices[size++] = index;
+        }
+      }
+      preds[i] = size == indices.length ? indices : Arrays.copyOf(indices, size);
+    }
 
-      boolean changed = false;
+    idoms = new int[count];
+    Arrays.fill(idoms, -1);
+    idoms[0] = 0;
 
-      for (Integer id : lstIds) {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
 
-        Statement stat = statement.getStats().getWithKey(id);
-        Integer idom = null;
+      // exclude first statement
+      for (int i = 1; i < count; i++) {
+        int idom = -1;
 
-        for (StatEdge edge : stat.getAllPredecessorEdges()) {
-          if (colOrderedIDoms.getWithKey(edge.getSource().id) != null) {
-            idom = getCommonIDom(idom, edge.getSource().id, colOrderedIDoms);
+        for (int pred : preds[i]) {
+          if (idoms[pred] >= 0) {
+            idom = getCommonIDom(idom, pred, idoms);
           }
         }
 
-        Integer oldidom = colOrderedIDoms.putWithKey(idom, id);
-        if (!idom.equals(oldidom)) {
+        if (idoms[i] != idom) {
+          idoms[i] = idom;
           changed = true;
         }
       }
-
-      if (!changed) {
-        break;
-      }
     }
   }
 
-  public VBStyleCollection<Integer, Integer> getOrderedIDoms() {
-    return colOrderedIDoms;
+  /**
+   * @return the ids of the statements in reverse postorder, the order of {@link #getIDom}
+   */
+  public List<Integer> getOrderedIds() {
+    return orderedIds;
+  }
+
+  /**
+   * @return the id of the immediate dominator of the statement at {@code index} of {@link #getOrderedIds}
+   */
+  public Integer getIDom(int index) {
+    return idoms[index] < 0 ? null : orderedIds.get(idoms[index]);
   }
 
   public boolean isDominator(Integer node, Integer dom) {
 
-    while (!node.equals(dom)) {
+    if (node.equals(dom)) {
+      return true;
+    }
 
-      Integer idom = colOrderedIDoms.getWithKey(node);
+    Integer index = mapIndices.get(node);
+    Integer domIndex = mapIndices.get(dom);
+    if (index == null || domIndex == null) {
+      return false;
+    }
 
-      if (idom.equals(node)) {
-        return false; // root node
-      }
-      else {
-        node = idom;
-      }
+    // dominators precede the nodes they dominate in reverse postorder
+    int current = index;
+    while (current > domIndex) {
+      current = idoms[current];
     }
 
-    return true;
+    return current == domIndex;
   }
 }
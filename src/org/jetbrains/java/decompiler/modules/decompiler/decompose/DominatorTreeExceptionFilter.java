@@ -3,7 +3,6 @@ package org.jetbrains.java.decompiler.modules.decompiler.decompose;
 
 import org.jetbrains.java.decompiler.modules.decompiler.StatEdge;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.Statement;
-import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
 import java.util.*;
 import java.util.Map.Entry;
@@ -60,12 +59,10 @@ public class DominatorTreeExceptionFilter {
   }
 
   private void buildDominatorTree() {
-    VBStyleCollection<Integer, Integer> orderedIDoms = domEngine.getOrderedIDoms();
-
-    List<Integer> lstKeys = orderedIDoms.getLstKeys();
+    List<Integer> lstKeys = domEngine.getOrderedIds();
     for (int index = lstKeys.size() - 1; index >= 0; index--) {
       Integer key = lstKeys.get(index);
-      Integer idom = orderedIDoms.get(index);
+      Integer idom = domEngine.getIDom(index);
       mapTreeBranches.computeIfAbsent(idom, k -> new LinkedHashSet<>()).add(key);
     }
 
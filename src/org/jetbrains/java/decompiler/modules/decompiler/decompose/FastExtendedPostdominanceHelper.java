@@ -3,42 +3,44 @@ package org.jetbrains.java.decompiler.modules.decompiler.decompose;
 
 import org.jetbrains.java.decompiler.modules.decompiler.StatEdge;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.Statement;
-import org.jetbrains.java.decompiler.util.FastFixedSetFactory;
-import org.jetbrains.java.decompiler.util.FastFixedSetFactory.FastFixedSet;
-import org.jetbrains.java.decompiler.util.InterpreterUtil;
 
 import java.util.*;
-import java.util.Map.Entry;
 
+/**
+ * Extended postdominators of the statements of a container. The statements are numbered in the order of
+ * {@link Statement#getStats()} and all sets are bitsets over these indices, one {@code long[]} row per statement.
+ */
 public class FastExtendedPostdominanceHelper {
 
-  private List<Statement> lstReversePostOrderList;
+  private Statement statement;
 
-  private HashMap<Integer, FastFixedSet<Integer>> mapSupportPoints = new LinkedHashMap<>();
+  private final List<Statement> stats = new ArrayList<>();
 
-  private final HashMap<Integer, FastFixedSet<Integer>> mapExtPostdominators = new LinkedHashMap<>();
+  private final Map<Integer, Integer> mapIndices = new HashMap<>();
 
-  private Statement statement;
+  // statement indices in reverse postorder
+  private int[] reversePostOrder;
+
+  private int words;
 
-  private FastFixedSetFactory<Integer> factory;
+  // extended postdominators by statement index, null if there are none
+  private long[][] extPostdominators;
 
   public HashMap<Integer, Set<Integer>> getExtendedPostdominators(Statement statement) {
 
     this.statement = statement;
 
-    HashSet<Integer> set = new LinkedHashSet<>();
     for (Statement st : statement.getStats()) {
-      set.add(st.id);
+      mapIndices.put(st.id, stats.size());
+      stats.add(st);
     }
-    this.factory = new FastFixedSetFactory<>(set);
+    words = (stats.size() + 63) >>> 6;
 
-    lstReversePostOrderList = statement.getReversePostOrderList();
-
-    //		try {
-    //			DotExporter.toDotFile(statement, new File("c:\\Temp\\stat1.dot"));
-    //		} catch (Exception ex) {
-    //			ex.printStackTrace();
-    //		}
+    List<Statement> lstReversePostOrderList = statement.getReversePostOrderList();
+    reversePostOrder = new int[lstReversePostOrderList.size()];
+    for (int i = 0; i < reversePostOrder.length; i++) {
+      reversePostOrder[i] = mapIndices.get(lstReversePostOrderList.get(i).id);
+    }
 
     calcDefaultReachableSets();
 
@@ -51,12 +53,18 @@ public class FastExtendedPostdominanceHelper {
 
     filterOnDominance(filter);
 
-    Set<Entry<Integer, FastFixedSet<Integer>>> entries = mapExtPostdominators.entrySet();
-    HashMap<Integer, Set<Integer>> res = new HashMap<>(entries.size());
-    for (Entry<Integer, FastFixedSet<Integer>> entry : entries) {
-      List<Integer> lst = new ArrayList<>(entry.getValue().toPlainSet());
-      Collections.sort(lst); // Order Matters!
-      res.put(entry.getKey(), new LinkedHashSet<>(lst));
+    HashMap<Integer, Set<Integer>> res = new HashMap<>();
+    List<Integer> lst = new ArrayList<>();
+    for (int i = 0; i < stats.size(); i++) {
+      long[] row = extPostdominators[i];
+      if (row != null) {
+        lst.clear();
+        for (int index = nextSetBit(row, 0); index >= 0; index = nextSetBit(row, index + 1)) {
+          lst.add(stats.get(index).id);
+        }
+        Collections.sort(lst); // Order Matters!
+        res.put(stats.get(i).id, new LinkedHashSet<>(lst));
+      }
     }
 
     return res;
@@ -66,258 +74,286 @@ public class FastExtendedPostdominanceHelper {
   private void filterOnDominance(DominatorTreeExceptionFilter filter) {
 
     DominatorEngine engine = filter.getDomEngine();
-    LinkedList<Statement> stack = new LinkedList<>();
-    LinkedList<FastFixedSet<Integer>> stackPath = new LinkedList<>();
-    Set<Statement> setVisited = new HashSet<>();
+    int[] queue = new int[stats.size()];
+    long[][] queuePaths = new long[stats.size()][];
+    boolean[] visited = new boolean[stats.size()];
 
-    for (Integer head : new HashSet<>(mapExtPostdominators.keySet())) {
+    for (int head = 0; head < stats.size(); head++) {
 
-      FastFixedSet<Integer> setPostdoms = mapExtPostdominators.get(head);
-
-      stack.clear();
-      stackPath.clear();
+      long[] setPostdoms = extPostdominators[head];
+      if (setPostdoms == null) {
+        continue;
+      }
 
-      stack.add(statement.getStats().getWithKey(head));
-      stackPath.add(factory.spawnEmptySet());
+      Integer headId = stats.get(head).id;
 
-      setVisited.clear();
+      int first = 0, last = 0;
+      queue[last] = head;
+      queuePaths[last++] = new long[words];
 
-      setVisited.add(stack.getFirst());
+      Arrays.fill(visited, false);
+      visited[head] = true;
 
-      while (!stack.isEmpty()) {
+      while (first < last) {
 
-        Statement stat = stack.removeFirst();
-        FastFixedSet<Integer> path = stackPath.removeFirst();
+        int index = queue[first];
+        long[] path = queuePaths[first];
+        queuePaths[first++] = null;
 
-        if (setPostdoms.contains(stat.id)) {
-          path.add(stat.id);
+        if (contains(setPostdoms, index)) {
+          path[index >>> 6] |= 1L << index;
         }
 
-        if (path.contains(setPostdoms)) {
+        if (containsAll(path, setPostdoms)) {
           continue;
         }
 
-        if(!engine.isDominator(stat.id, head)) {
-          setPostdoms.complement(path);
+        Statement stat = stats.get(index);
+
+        if (!engine.isDominator(stat.id, headId)) {
+          removeAll(setPostdoms, path);
           continue;
         }
 
         for (StatEdge edge : stat.getSuccessorEdges(StatEdge.TYPE_REGULAR)) {
 
-          Statement edge_destination = edge.getDestination();
+          int destination = mapIndices.get(edge.getDestination().id);
 
-          if(!setVisited.contains(edge_destination)) {
+          if (!visited[destination]) {
 
-            stack.add(edge_destination);
-            stackPath.add(path.getCopy());
+            queue[last] = destination;
+            queuePaths[last++] = path.clone();
 
-            setVisited.add(edge_destination);
+            visited[destination] = true;
           }
         }
       }
 
-      if (setPostdoms.isEmpty()) {
-        mapExtPostdominators.remove(head);
+      if (isEmpty(setPostdoms)) {
+        extPostdominators[head] = null;
       }
     }
   }
 
   private void filterOnExceptionRanges(DominatorTreeExceptionFilter filter) {
-    for (Integer head : new HashSet<>(mapExtPostdominators.keySet())) {
-      FastFixedSet<Integer> set = mapExtPostdominators.get(head);
-      for (Iterator<Integer> it = set.iterator(); it.hasNext(); ) {
-        if (!filter.acceptStatementPair(head, it.next())) {
-          it.remove();
+    for (int head = 0; head < stats.size(); head++) {
+      long[] row = extPostdominators[head];
+      if (row == null) {
+        continue;
+      }
+
+      Integer headId = stats.get(head).id;
+      for (int index = nextSetBit(row, 0); index >= 0; index = nextSetBit(row, index + 1)) {
+        if (!filter.acceptStatementPair(headId, stats.get(index).id)) {
+          row[index >>> 6] &= ~(1L << index);
         }
       }
-      if (set.isEmpty()) {
-        mapExtPostdominators.remove(head);
+
+      if (isEmpty(row)) {
+        extPostdominators[head] = null;
       }
     }
   }
 
   private void removeErroneousNodes() {
-    mapSupportPoints = new HashMap<>();
+    long[][] reachability = calcReachability(StatEdge.TYPE_REGULAR);
 
-    calcReachabilitySuppPoints(StatEdge.TYPE_REGULAR);
+    long[] intersection = new long[words];
+    Map<Long, long[]> mapRemoved = new HashMap<>();
 
-    iterateReachability((node, mapSets) -> {
-      Integer nodeid = node.id;
+    for (int node : reversePostOrder) {
+      long[] setReachability = reachability[node];
 
-      FastFixedSet<Integer> setReachability = mapSets.get(nodeid);
-      List<FastFixedSet<Integer>> lstPredSets = new ArrayList<>();
-
-      for (StatEdge prededge : node.getPredecessorEdges(StatEdge.TYPE_REGULAR)) {
-        FastFixedSet<Integer> setPred = mapSets.get(prededge.getSource().id);
-        if (setPred == null) {
-          setPred = mapSupportPoints.get(prededge.getSource().id);
+      List<long[]> lstPredSets = new ArrayList<>();
+      for (StatEdge prededge : stats.get(node).getPredecessorEdges(StatEdge.TYPE_REGULAR)) {
+        Integer pred = mapIndices.get(prededge.getSource().id);
+        if (pred != null && reachability[pred] != null) {
+          lstPredSets.add(reachability[pred]);
         }
-
-        // setPred cannot be empty as it is a reachability set
-        lstPredSets.add(setPred);
       }
 
-      for (Integer id : setReachability) {
+      // the nodes to remove from the postdominators of a node only depend on the predecessor sets containing it,
+      // so they are computed once per combination as long as the combination fits into a long
+      boolean cache = lstPredSets.size() <= 64;
+      mapRemoved.clear();
+
+      for (int id = nextSetBit(setReachability, 0); id >= 0; id = nextSetBit(setReachability, id + 1)) {
+
+        long mask = 0;
+        if (cache && id != node) {
+          for (int i = 0; i < lstPredSets.size(); i++) {
+            if (contains(lstPredSets.get(i), id)) {
+              mask |= 1L << i;
+            }
+          }
 
-        FastFixedSet<Integer> setReachabilityCopy = setReachability.getCopy();
+          long[] removed = mapRemoved.get(mask);
+          if (removed != null) {
+            removeAll(extPostdominators[id], removed);
+            continue;
+          }
+        }
 
-        FastFixedSet<Integer> setIntersection = factory.spawnEmptySet();
+        Arrays.fill(intersection, 0);
         boolean isIntersectionInitialized = false;
 
-        for (FastFixedSet<Integer> predset : lstPredSets) {
-          if (predset.contains(id)) {
+        for (long[] predset : lstPredSets) {
+          if (contains(predset, id)) {
             if (!isIntersectionInitialized) {
-              setIntersection.union(predset);
+              System.arraycopy(predset, 0, intersection, 0, words);
               isIntersectionInitialized = true;
             }
             else {
-              setIntersection.intersection(predset);
+              for (int i = 0; i < words; i++) {
+                intersection[i] &= predset[i];
+              }
             }
           }
         }
 
-        if (nodeid != id.intValue()) {
-          setIntersection.add(nodeid);
+        if (node != id) {
+          intersection[node >>> 6] |= 1L << node;
         }
         else {
-          setIntersection.remove(nodeid);
+          intersection[node >>> 6] &= ~(1L << node);
         }
 
-        setReachabilityCopy.complement(setIntersection);
+        long[] removed = setReachability.clone();
+        removeAll(removed, intersection);
 
-        mapExtPostdominators.get(id).complement(setReachabilityCopy);
-      }
+        removeAll(extPostdominators[id], removed);
 
-      return false;
-    }, StatEdge.TYPE_REGULAR);
+        if (cache && id != node) {
+          mapRemoved.put(mask, removed);
+        }
+      }
+    }
 
     // exception handlers cannot be postdominator nodes
-    // TODO: replace with a standard set?
-    FastFixedSet<Integer> setHandlers = factory.spawnEmptySet();
+    long[] setHandlers = new long[words];
     boolean handlerfound = false;
 
-    for (Statement stat : statement.getStats()) {
+    for (int i = 0; i < stats.size(); i++) {
+      Statement stat = stats.get(i);
       if (stat.getPredecessorEdges(Statement.STATEDGE_DIRECT_ALL).isEmpty() &&
           !stat.getPredecessorEdges(StatEdge.TYPE_EXCEPTION).isEmpty()) { // exception handler
-        setHandlers.add(stat.id);
+        setHandlers[i >>> 6] |= 1L << i;
         handlerfound = true;
       }
     }
 
     if (handlerfound) {
-      for (FastFixedSet<Integer> set : mapExtPostdominators.values()) {
-        set.complement(setHandlers);
+      for (long[] set : extPostdominators) {
+        removeAll(set, setHandlers);
       }
     }
   }
 
   private void calcDefaultReachableSets() {
-    int edgetype = StatEdge.TYPE_REGULAR | StatEdge.TYPE_EXCEPTION;
+    long[][] reachability = calcReachability(StatEdge.TYPE_REGULAR | StatEdge.TYPE_EXCEPTION);
 
-    calcReachabilitySuppPoints(edgetype);
+    extPostdominators = new long[stats.size()][words];
 
-    for (Statement stat : statement.getStats()) {
-      mapExtPostdominators.put(stat.id, factory.spawnEmptySet());
-    }
-
-    iterateReachability((node, mapSets) -> {
-      Integer nodeid = node.id;
-      FastFixedSet<Integer> setReachability = mapSets.get(nodeid);
-
-      for (Integer id : setReachability) {
-        mapExtPostdominators.get(id).add(nodeid);
+    for (int node : reversePostOrder) {
+      long[] setReachability = reachability[node];
+      for (int id = nextSetBit(setReachability, 0); id >= 0; id = nextSetBit(setReachability, id + 1)) {
+        extPostdominators[id][node >>> 6] |= 1L << node;
       }
-
-      return false;
-    }, edgetype);
+    }
   }
 
-  private void calcReachabilitySuppPoints(final int edgetype) {
-    iterateReachability((node, mapSets) -> {
-      // consider to be a support point
-      for (StatEdge sucedge : node.getAllSuccessorEdges()) {
-        if ((sucedge.getType() & edgetype) != 0) {
-          if (mapSets.containsKey(sucedge.getDestination().id)) {
-            FastFixedSet<Integer> setReachability = mapSets.get(node.id);
-
-            if (!InterpreterUtil.equalObjects(setReachability, mapSupportPoints.get(node.id))) {
-              mapSupportPoints.put(node.id, setReachability);
-              return true;
-            }
+  /**
+   * @return for every statement in reverse postorder the statements it is reachable from over edges of {@code edgetype},
+   * including itself; null for the statements not in reverse postorder
+   */
+  private long[][] calcReachability(int edgetype) {
+    long[][] reachability = new long[stats.size()][];
+    for (int node : reversePostOrder) {
+      reachability[node] = new long[words];
+      reachability[node][node >>> 6] |= 1L << node;
+    }
+
+    int[][] preds = new int[stats.size()][];
+    for (int node : reversePostOrder) {
+      List<StatEdge> edges = stats.get(node).getAllPredecessorEdges();
+      int[] indices = new int[edges.size()];
+      int size = 0;
+      for (StatEdge prededge : edges) {
+        if ((prededge.getType() & edgetype) != 0) {
+          Integer pred = mapIndices.get(prededge.getSource().id);
+          if (pred != null && reachability[pred] != null) {
+            indices[size++] = pred;
           }
         }
       }
+      preds[node] = Arrays.copyOf(indices, size);
+    }
 
-      return false;
-    }, edgetype);
-  }
-
-  private void iterateReachability(IReachabilityAction action, int edgetype) {
-    HashMap<Integer, FastFixedSet<Integer>> mapSets = new HashMap<>();
-
-    while (true) {
-      boolean iterate = false;
-
-      mapSets.clear();
-
-      for (Statement stat : lstReversePostOrderList) {
-
-        FastFixedSet<Integer> set = factory.spawnEmptySet();
-        set.add(stat.id);
-
-        for (StatEdge prededge : stat.getAllPredecessorEdges()) {
-          if ((prededge.getType() & edgetype) != 0) {
-            Statement pred = prededge.getSource();
-
-            FastFixedSet<Integer> setPred = mapSets.get(pred.id);
-            if (setPred == null) {
-              setPred = mapSupportPoints.get(pred.id);
-            }
-
-            if (setPred != null) {
-              set.union(setPred);
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+
+      for (int node : reversePostOrder) {
+        long[] set = reachability[node];
+        for (int pred : preds[node]) {
+          long[] setPred = reachability[pred];
+          for (int i = 0; i < words; i++) {
+            long value = set[i] | setPred[i];
+            if (value != set[i]) {
+              set[i] = value;
+              changed = true;
             }
           }
         }
+      }
+    }
 
-        mapSets.put(stat.id, set);
-
-        if (action != null) {
-          iterate |= action.action(stat, mapSets);
-        }
+    return reachability;
+  }
 
-        // remove reachability information of fully processed nodes (saves memory)
-        for (StatEdge prededge : stat.getAllPredecessorEdges()) {
-          if ((prededge.getType() & edgetype) != 0) {
-            Statement pred = prededge.getSource();
-
-            if (mapSets.containsKey(pred.id)) {
-              boolean remstat = true;
-              for (StatEdge sucedge : pred.getAllSuccessorEdges()) {
-                if ((sucedge.getType() & edgetype) != 0) {
-                  if (!mapSets.containsKey(sucedge.getDestination().id)) {
-                    remstat = false;
-                    break;
-                  }
-                }
-              }
+  private static boolean contains(long[] set, int index) {
+    return (set[index >>> 6] & (1L << index)) != 0;
+  }
 
-              if (remstat) {
-                mapSets.put(pred.id, null);
-              }
-            }
-          }
-        }
+  private static boolean containsAll(long[] set, long[] subset) {
+    for (int i = 0; i < set.length; i++) {
+      if ((subset[i] & ~set[i]) != 0) {
+        return false;
       }
+    }
+    return true;
+  }
 
-      if (!iterate) {
-        break;
+  private static void removeAll(long[] set, long[] removed) {
+    for (int i = 0; i < set.length; i++) {
+      set[i] &= ~removed[i];
+    }
+  }
+
+  private static boolean isEmpty(long[] set) {
+    for (long value : set) {
+      if (value != 0) {
+        return false;
       }
     }
+    return true;
   }
 
+  private static int nextSetBit(long[] set, int from) {
+    int i = from >>> 6;
+    if (i >= set.length) {
+      return -1;
+    }
 
-  private interface IReachabilityAction {
-    boolean action(Statement node, HashMap<Integer, FastFixedSet<Integer>> mapSets);
+    long word = set[i] & (-1L << from);
+    while (true) {
+      if (word != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+      if (++i == set.length) {
+        return -1;
+      }
+      word = set[i];
+    }
   }
 }
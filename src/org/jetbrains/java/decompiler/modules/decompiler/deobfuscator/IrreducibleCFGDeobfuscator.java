@@ -1,12 +1,19 @@
 // Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.jetbrains.java.decompiler.modules.decompiler.deobfuscator;
 
+import org.jetbrains.java.decompiler.code.cfg.BasicBlock;
+import org.jetbrains.java.decompiler.code.cfg.ControlFlowGraph;
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.modules.decompiler.StatEdge;
+import org.jetbrains.java.decompiler.modules.decompiler.StrongConnectivityHelper;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.BasicBlockStatement;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.Statement;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 
@@ -93,8 +100,18 @@ public final class IrreducibleCFGDeobfuscator {
   }
 
 
+  // copies the cheapest statement with several predecessors in a cycle, statements outside of cycles don't affect
+  // the reducibility of the graph
   private static Statement getCandidateForSplitting(Statement statement) {
 
+    Set<Statement> setCyclic = new HashSet<>();
+    StrongConnectivityHelper schelper = new StrongConnectivityHelper(statement.getFirst(), statement.getStats());
+    for (List<Statement> component : schelper.getComponents()) {
+      if (component.size() > 1) {
+        setCyclic.addAll(component);
+      }
+    }
+
     Statement candidateForSplitting = null;
     int sizeCandidateForSplitting = Integer.MAX_VALUE;
     int succsCandidateForSplitting = Integer.MAX_VALUE;
@@ -103,7 +120,7 @@ public final class IrreducibleCFGDeobfuscator {
 
       Set<Statement> setPreds = stat.getNeighboursSet(StatEdge.TYPE_REGULAR, Statement.DIRECTION_BACKWARD);
 
-      if (setPreds.size() > 1) {
+      if (setPreds.size() > 1 && setCyclic.contains(stat)) {
         int succCount = stat.getNeighboursSet(StatEdge.TYPE_REGULAR, Statement.DIRECTION_FORWARD).size();
         if (succCount <= succsCandidateForSplitting) {
           int size = getStatementSize(stat) * (setPreds.size() - 1);
@@ -121,13 +138,28 @@ public final class IrreducibleCFGDeobfuscator {
     return candidateForSplitting;
   }
 
-  public static boolean splitIrreducibleNode(Statement statement) {
+  /**
+   * Copies a statement of an irreducible graph for one of its predecessors, charging its size to {@code budget}.
+   * @return false if no statement can be split within the budget
+   */
+  public static boolean splitIrreducibleNode(Statement statement, SplitBudget budget) {
 
     Statement splitnode = getCandidateForSplitting(statement);
     if (splitnode == null) {
       return false;
     }
 
+    int size = getStatementSize(splitnode);
+    if (budget.remaining >= 0 && size > budget.remaining) {
+      String message = "Node splitting budget of " + budget.initial + " instructions exceeded, see option " +
+                       IFernflowerPreferences.MAX_SPLIT_FACTOR;
+      DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.WARN);
+      return false;
+    }
+    if (budget.remaining >= 0) {
+      budget.remaining -= size;
+    }
+
     StatEdge enteredge = splitnode.getPredecessorEdges(StatEdge.TYPE_REGULAR).iterator().next();
 
     // copy the smallest statement
@@ -226,4 +258,25 @@ public final class IrreducibleCFGDeobfuscator {
       initCopiedStatement(st);
     }
   }
+
+  /**
+   * Instructions node splitting may copy while parsing a method, shared by all parses of the method. Splitting may grow
+   * the graphs of obfuscated methods exponentially, so it gives up once the copies exceed
+   * {@link IFernflowerPreferences#MAX_SPLIT_FACTOR} times the size of the method.
+   */
+  public static final class SplitBudget {
+    private static final int MIN_BUDGET = 1024;
+
+    private final long initial;
+    private long remaining; // negative if unlimited
+
+    public SplitBudget(ControlFlowGraph graph) {
+      int factor = Integer.parseInt(DecompilerContext.getProperty(IFernflowerPreferences.MAX_SPLIT_FACTOR).toString());
+      long size = 0;
+      for (BasicBlock block : graph.getBlocks()) {
+        size += block.getSeq().length();
+      }
+      initial = remaining = factor > 0 ? Math.max(MIN_BUDGET, size * factor) : -1;
+    }
+  }
 }
@@ -23,12 +23,23 @@ public class DirectGraph {
   // exit, [source, destination]
   public final HashMap<String, List<FinallyPathWrapper>> mapLongRangeFinallyPaths = new HashMap<>();
 
-  // negative if branches (recorded for handling of && and ||)
-  public final HashMap<String, String> mapNegIfBranch = new HashMap<>();
-
   // nodes, that are exception exits of a finally block with monitor variable
   public final HashMap<String, String> mapFinallyMonitorExceptionPathExits = new HashMap<>();
 
+  private int nodeCount;
+
+  public int nextNodeIndex() {
+    return nodeCount++;
+  }
+
+  /**
+   * @return the number of nodes created for the graph, including the ones unreachable from {@link #first}. Node indices
+   * are below it, so per node data can be kept in arrays.
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
   public void sortReversePostOrder() {
     LinkedList<DirectNode> res = new LinkedList<>();
     addToReversePostOrderListIterative(first, res);
@@ -22,6 +22,9 @@ public class DirectNode {
 
   public final String id;
 
+  // dense index of the node in its graph, see DirectGraph#getNodeCount
+  public final int index;
+
   public BasicBlockStatement block;
 
   public final Statement statement;
@@ -32,17 +35,22 @@ public class DirectNode {
 
   public final List<DirectNode> preds = new ArrayList<>();
 
-  public DirectNode(int type, Statement statement, String id) {
+  // successor on the negative branch of an 'if' (recorded for handling of && and ||)
+  public DirectNode negIfBranch;
+
+  public DirectNode(int type, Statement statement, String id, int index) {
     this.type = type;
     this.statement = statement;
     this.id = id;
+    this.index = index;
   }
 
-  public DirectNode(int type, Statement statement, BasicBlockStatement block) {
+  public DirectNode(int type, Statement statement, BasicBlockStatement block, int index) {
     this.type = type;
     this.statement = statement;
 
     this.id = block.id.toString();
+    this.index = index;
     this.block = block;
   }
 
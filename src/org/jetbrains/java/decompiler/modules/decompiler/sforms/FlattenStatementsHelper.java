@@ -40,7 +40,7 @@ public class FlattenStatementsHelper {
 
     // dummy exit node
     Statement dummyexit = root.getDummyExit();
-    DirectNode node = new DirectNode(DirectNode.NODE_DIRECT, dummyexit, dummyexit.id.toString());
+    DirectNode node = new DirectNode(DirectNode.NODE_DIRECT, dummyexit, dummyexit.id.toString(), graph.nextNodeIndex());
     node.exprents = new ArrayList<>();
     graph.nodes.addWithKey(node, node.id);
     mapDestinationNodes.put(dummyexit.id, new String[]{node.id, null});
@@ -93,7 +93,7 @@ public class FlattenStatementsHelper {
 
         switch (stat.type) {
           case Statement.TYPE_BASICBLOCK:
-            node = new DirectNode(DirectNode.NODE_DIRECT, stat, (BasicBlockStatement)stat);
+            node = new DirectNode(DirectNode.NODE_DIRECT, stat, (BasicBlockStatement)stat, graph.nextNodeIndex());
             if (stat.getExprents() != null) {
               node.exprents = stat.getExprents();
             }
@@ -106,7 +106,7 @@ public class FlattenStatementsHelper {
             List<Exprent> tailExprentList = statEntry.tailExprents;
 
             if (tailExprentList != null) {
-              DirectNode tail = new DirectNode(DirectNode.NODE_TAIL, stat, stat.id + "_tail");
+              DirectNode tail = new DirectNode(DirectNode.NODE_TAIL, stat, stat.id + "_tail", graph.nextNodeIndex());
               tail.exprents = tailExprentList;
               graph.nodes.putWithKey(tail, tail.id);
 
@@ -124,7 +124,7 @@ public class FlattenStatementsHelper {
             break;
           case Statement.TYPE_CATCHALL:
           case Statement.TYPE_TRYCATCH:
-            DirectNode firstnd = new DirectNode(DirectNode.NODE_TRY, stat, stat.id + "_try");
+            DirectNode firstnd = new DirectNode(DirectNode.NODE_TRY, stat, stat.id + "_try", graph.nextNodeIndex());
 
             if (stat.type == Statement.TYPE_TRYCATCH) {
               CatchStatement catchStat = (CatchStatement)stat;
@@ -182,7 +182,7 @@ public class FlattenStatementsHelper {
             switch (looptype) {
               case DoStatement.LOOP_WHILE:
               case DoStatement.LOOP_DOWHILE:
-                node = new DirectNode(DirectNode.NODE_CONDITION, stat, stat.id + "_cond");
+                node = new DirectNode(DirectNode.NODE_CONDITION, stat, stat.id + "_cond", graph.nextNodeIndex());
                 node.exprents = dostat.getConditionExprentList();
                 graph.nodes.putWithKey(node, node.id);
 
@@ -209,19 +209,19 @@ public class FlattenStatementsHelper {
                 break;
               case DoStatement.LOOP_FOR:
               case DoStatement.LOOP_FOREACH:
-                DirectNode nodeinit = new DirectNode(DirectNode.NODE_INIT, stat, stat.id + "_init");
+                DirectNode nodeinit = new DirectNode(DirectNode.NODE_INIT, stat, stat.id + "_init", graph.nextNodeIndex());
                 if (dostat.getInitExprent() != null) {
                   nodeinit.exprents = dostat.getInitExprentList();
                 }
                 graph.nodes.putWithKey(nodeinit, nodeinit.id);
 
-                DirectNode nodecond = new DirectNode(DirectNode.NODE_CONDITION, stat, stat.id + "_cond");
+                DirectNode nodecond = new DirectNode(DirectNode.NODE_CONDITION, stat, stat.id + "_cond", graph.nextNodeIndex());
                 if (looptype != DoStatement.LOOP_FOREACH) {
                   nodecond.exprents = dostat.getConditionExprentList();
                 }
                 graph.nodes.putWithKey(nodecond, nodecond.id);
 
-                DirectNode nodeinc = new DirectNode(DirectNode.NODE_INCREMENT, stat, stat.id + "_inc");
+                DirectNode nodeinc = new DirectNode(DirectNode.NODE_INCREMENT, stat, stat.id + "_inc", graph.nextNodeIndex());
                 nodeinc.exprents = dostat.getIncExprentList();
                 graph.nodes.putWithKey(nodeinc, nodeinc.id);
 
@@ -445,7 +445,7 @@ public class FlattenStatementsHelper {
       }
 
       if (mapPosIfBranch.containsKey(sourceid) && !statid.equals(mapPosIfBranch.get(sourceid))) {
-        graph.mapNegIfBranch.put(sourceid, dest.id);
+        source.negIfBranch = dest;
       }
     }
 
@@ -2,6 +2,7 @@
 package org.jetbrains.java.decompiler.modules.decompiler.sforms;
 
 import org.jetbrains.java.decompiler.code.CodeConstants;
+import org.jetbrains.java.decompiler.main.rels.MethodProcessorRunnable;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.AssignmentExprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.Exprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.FunctionExprent;
@@ -20,25 +21,25 @@ import org.jetbrains.java.decompiler.util.FastSparseSetFactory.FastSparseSet;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
 import org.jetbrains.java.decompiler.util.SFormsFastMapDirect;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.*;
 import java.util.Map.Entry;
 
 public class SSAConstructorSparseEx {
 
-  // node id, var, version
-  private final HashMap<String, SFormsFastMapDirect> inVarVersions = new HashMap<>();
+  // node index, var, version
+  private SFormsFastMapDirect[] inVarVersions;
 
-  // node id, var, version (direct branch)
-  private final HashMap<String, SFormsFastMapDirect> outVarVersions = new HashMap<>();
+  // node index, var, version (direct branch)
+  private SFormsFastMapDirect[] outVarVersions;
 
-  // node id, var, version (negative branch)
-  private final HashMap<String, SFormsFastMapDirect> outNegVarVersions = new HashMap<>();
+  // node index, var, version (negative branch)
+  private SFormsFastMapDirect[] outNegVarVersions;
 
-  // node id, var, version
-  private final HashMap<String, SFormsFastMapDirect> extraVarVersions = new HashMap<>();
+  // node index, var, version
+  private SFormsFastMapDirect[] extraVarVersions;
+
+  // node index, whether the node is the source of short range finally paths
+  private boolean[] finallyExits;
 
   // (var, version), version
   private final HashMap<VarVersionPair, FastSparseSet<Integer>> phi = new HashMap<>();
@@ -62,14 +63,17 @@ public class SSAConstructorSparseEx {
     }
     factory = new FastSparseSetFactory<>(setInit);
 
+    initNodeMaps(dgraph);
+
     SFormsFastMapDirect firstmap = createFirstMap(mt);
-    extraVarVersions.put(dgraph.first.id, firstmap);
+    extraVarVersions[dgraph.first.index] = firstmap;
 
     setCatchMaps(root, dgraph, flatthelper);
 
     int itteration = 1;
-    HashSet<String> updated = new HashSet<>();
+    BitSet updated = new BitSet(dgraph.getNodeCount());
     do {
+      MethodProcessorRunnable.checkCancelled();
       // System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
       ssaStatements(dgraph, updated, mt, itteration++);
       // System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
@@ -77,7 +81,23 @@ public class SSAConstructorSparseEx {
     while (!updated.isEmpty());
   }
 
-  private void ssaStatements(DirectGraph dgraph, HashSet<String> updated, StructMethod mt, int itteration) {
+  private void initNodeMaps(DirectGraph dgraph) {
+    int nodeCount = dgraph.getNodeCount();
+    inVarVersions = new SFormsFastMapDirect[nodeCount];
+    outVarVersions = new SFormsFastMapDirect[nodeCount];
+    outNegVarVersions = new SFormsFastMapDirect[nodeCount];
+    extraVarVersions = new SFormsFastMapDirect[nodeCount];
+
+    // predecessors may be unreachable, so they are collected from the edges and not from the graph
+    finallyExits = new boolean[nodeCount];
+    for (DirectNode node : dgraph.nodes) {
+      for (DirectNode pred : node.preds) {
+        finallyExits[pred.index] = dgraph.mapShortRangeFinallyPaths.containsKey(pred.id);
+      }
+    }
+  }
+
+  private void ssaStatements(DirectGraph dgraph, BitSet updated, StructMethod mt, int itteration) {
 
     DotExporter.toDotFile(dgraph, mt, "ssaStatements_" + itteration, outVarVersions);
 
@@ -93,10 +113,10 @@ public class SSAConstructorSparseEx {
       //				}
       //			}
 
-      updated.remove(node.id);
+      updated.clear(node.index);
       mergeInVarMaps(node, dgraph);
 
-      SFormsFastMapDirect varmap = inVarVersions.get(node.id);
+      SFormsFastMapDirect varmap = inVarVersions[node.index];
       varmap = new SFormsFastMapDirect(varmap);
 
       SFormsFastMapDirect[] varmaparr = new SFormsFastMapDirect[]{varmap, null};
@@ -111,17 +131,17 @@ public class SSAConstructorSparseEx {
         varmaparr[1] = varmaparr[0];
       }
 
-      boolean this_updated = !mapsEqual(varmaparr[0], outVarVersions.get(node.id))
-                             || (outNegVarVersions.containsKey(node.id) && !mapsEqual(varmaparr[1], outNegVarVersions.get(node.id)));
+      boolean this_updated = !mapsEqual(varmaparr[0], outVarVersions[node.index])
+                             || (outNegVarVersions[node.index] != null && !mapsEqual(varmaparr[1], outNegVarVersions[node.index]));
 
       if (this_updated) {
-        outVarVersions.put(node.id, varmaparr[0]);
-        if (dgraph.mapNegIfBranch.containsKey(node.id)) {
-          outNegVarVersions.put(node.id, varmaparr[1]);
+        outVarVersions[node.index] = varmaparr[0];
+        if (node.negIfBranch != null) {
+          outNegVarVersions[node.index] = varmaparr[1];
         }
 
         for (DirectNode nd : node.succs) {
-          updated.add(nd.id);
+          updated.set(nd.index);
         }
       }
     }
@@ -294,7 +314,7 @@ public class SSAConstructorSparseEx {
     SFormsFastMapDirect mapNew = new SFormsFastMapDirect();
 
     for (DirectNode pred : node.preds) {
-      SFormsFastMapDirect mapOut = getFilteredOutMap(node.id, pred.id, dgraph, node.id);
+      SFormsFastMapDirect mapOut = getFilteredOutMap(node, pred, dgraph);
       if (mapNew.isEmpty()) {
         mapNew = mapOut.getCopy();
       }
@@ -303,8 +323,8 @@ public class SSAConstructorSparseEx {
       }
     }
 
-    if (extraVarVersions.containsKey(node.id)) {
-      SFormsFastMapDirect mapExtra = extraVarVersions.get(node.id);
+    SFormsFastMapDirect mapExtra = extraVarVersions[node.index];
+    if (mapExtra != null) {
       if (mapNew.isEmpty()) {
         mapNew = mapExtra.getCopy();
       }
@@ -313,21 +333,30 @@ public class SSAConstructorSparseEx {
       }
     }
 
-    inVarVersions.put(node.id, mapNew);
+    inVarVersions[node.index] = mapNew;
   }
 
+  private SFormsFastMapDirect getFilteredOutMap(DirectNode node, DirectNode pred, DirectGraph dgraph) {
+    if (finallyExits[pred.index]) {
+      return getFilteredOutMap(node.id, pred.id, dgraph, node.id);
+    }
+
+    SFormsFastMapDirect mapOut = pred.negIfBranch == node ? outNegVarVersions[pred.index] : outVarVersions[pred.index];
+    return mapOut != null ? mapOut.getCopy() : new SFormsFastMapDirect();
+  }
+
+  // finally paths are recorded by node id
   private SFormsFastMapDirect getFilteredOutMap(String nodeid, String predid, DirectGraph dgraph, String destid) {
 
     SFormsFastMapDirect mapNew = new SFormsFastMapDirect();
 
-    if (nodeid.equals(dgraph.mapNegIfBranch.get(predid))) {
-      if (outNegVarVersions.containsKey(predid)) {
-        mapNew = outNegVarVersions.get(predid).getCopy();
+    DirectNode pred = dgraph.nodes.getWithKey(predid);
+    if (pred != null) {
+      SFormsFastMapDirect mapOut = isNegIfBranch(nodeid, pred) ? outNegVarVersions[pred.index] : outVarVersions[pred.index];
+      if (mapOut != null) {
+        mapNew = mapOut.getCopy();
       }
     }
-    else if (outVarVersions.containsKey(predid)) {
-      mapNew = outVarVersions.get(predid).getCopy();
-    }
 
     boolean isFinallyExit = dgraph.mapShortRangeFinallyPaths.containsKey(predid);
 
@@ -355,11 +384,12 @@ public class SSAConstructorSparseEx {
           map = getFilteredOutMap(finwrap.entry, finwrap.source, dgraph, destid);
         }
         else {
-          if (finwrap.entry.equals(dgraph.mapNegIfBranch.get(finwrap.source))) {
-            map = outNegVarVersions.get(finwrap.source);
+          DirectNode source = dgraph.nodes.getWithKey(finwrap.source);
+          if (source == null) {
+            map = null;
           }
           else {
-            map = outVarVersions.get(finwrap.source);
+            map = isNegIfBranch(finwrap.entry, source) ? outNegVarVersions[source.index] : outVarVersions[source.index];
           }
         }
 
@@ -396,7 +426,8 @@ public class SSAConstructorSparseEx {
 
         mapNewTemp.union(mapTrueSource);
 
-        SFormsFastMapDirect oldInMap = inVarVersions.get(nodeid);
+        DirectNode node = dgraph.nodes.getWithKey(nodeid);
+        SFormsFastMapDirect oldInMap = node != null ? inVarVersions[node.index] : null;
         if (oldInMap != null) {
           mapNewTemp.union(oldInMap);
         }
@@ -408,6 +439,10 @@ public class SSAConstructorSparseEx {
     return mapNew;
   }
 
+  private static boolean isNegIfBranch(String nodeid, DirectNode pred) {
+    return pred.negIfBranch != null && nodeid.equals(pred.negIfBranch.id);
+  }
+
   private static SFormsFastMapDirect mergeMaps(SFormsFastMapDirect mapTo, SFormsFastMapDirect map2) {
 
     if (map2 != null && !map2.isEmpty()) {
@@ -468,7 +503,7 @@ public class SSAConstructorSparseEx {
           map = new SFormsFastMapDirect();
           setCurrentVar(map, varindex, version);
 
-          extraVarVersions.put(dgraph.nodes.getWithKey(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0]).id, map);
+          extraVarVersions[dgraph.nodes.getWithKey(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0]).index] = map;
         }
     }
 
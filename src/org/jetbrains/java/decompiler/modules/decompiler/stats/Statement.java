@@ -60,11 +60,8 @@ public class Statement implements IMatchable {
   // private fields
   // *****************************************************************************
 
-  private final Map<Integer, List<StatEdge>> mapSuccEdges = new HashMap<>();
-  private final Map<Integer, List<StatEdge>> mapPredEdges = new HashMap<>();
-
-  private final Map<Integer, List<Statement>> mapSuccStates = new HashMap<>();
-  private final Map<Integer, List<Statement>> mapPredStates = new HashMap<>();
+  private final EdgeMap succEdges = new EdgeMap();
+  private final EdgeMap predEdges = new EdgeMap();
 
   // statement as graph
   protected final VBStyleCollection<Statement, Integer> stats = new VBStyleCollection<>();
@@ -75,7 +72,8 @@ public class Statement implements IMatchable {
 
   protected List<Exprent> exprents;
 
-  protected final HashSet<StatEdge> labelEdges = new HashSet<>();
+  // created on demand, most statements are never the closure of an edge
+  private HashSet<StatEdge> labelEdges;
 
   protected final List<Exprent> varDefinitions = new ArrayList<>();
 
@@ -119,22 +117,8 @@ public class Statement implements IMatchable {
     isMonitorEnter = false;
     containsMonitorExit = false;
 
-    processMap(mapSuccEdges);
-    processMap(mapPredEdges);
-    processMap(mapSuccStates);
-    processMap(mapPredStates);
-  }
-
-  private static <T> void processMap(Map<Integer, List<T>> map) {
-    map.remove(StatEdge.TYPE_EXCEPTION);
-
-    List<T> lst = map.get(STATEDGE_DIRECT_ALL);
-    if (lst != null) {
-      map.put(STATEDGE_ALL, new ArrayList<>(lst));
-    }
-    else {
-      map.remove(STATEDGE_ALL);
-    }
+    succEdges.removeExceptionEdges();
+    predEdges.removeExceptionEdges();
   }
 
   public void collapseNodesToStatement(Statement stat) {
@@ -241,60 +225,36 @@ public class Statement implements IMatchable {
   }
 
   private void addEdgeDirectInternal(int direction, StatEdge edge, int edgetype) {
-    Map<Integer, List<StatEdge>> mapEdges = direction == DIRECTION_BACKWARD ? mapPredEdges : mapSuccEdges;
-    Map<Integer, List<Statement>> mapStates = direction == DIRECTION_BACKWARD ? mapPredStates : mapSuccStates;
-
-    mapEdges.computeIfAbsent(edgetype, k -> new ArrayList<>()).add(edge);
-
-    mapStates.computeIfAbsent(edgetype, k -> new ArrayList<>()).add(direction == DIRECTION_BACKWARD ? edge.getSource() : edge.getDestination());
+    EdgeMap edges = direction == DIRECTION_BACKWARD ? predEdges : succEdges;
+    edges.add(edgetype, edge, direction == DIRECTION_BACKWARD ? edge.getSource() : edge.getDestination());
   }
 
   private void addEdgeInternal(int direction, StatEdge edge) {
     int type = edge.getType();
 
-    int[] arrtypes;
-    if (type == StatEdge.TYPE_EXCEPTION) {
-      arrtypes = new int[]{STATEDGE_ALL, StatEdge.TYPE_EXCEPTION};
-    }
-    else {
-      arrtypes = new int[]{STATEDGE_ALL, STATEDGE_DIRECT_ALL, type};
-    }
-
-    for (int edgetype : arrtypes) {
-      addEdgeDirectInternal(direction, edge, edgetype);
+    addEdgeDirectInternal(direction, edge, STATEDGE_ALL);
+    if (type != StatEdge.TYPE_EXCEPTION) {
+      addEdgeDirectInternal(direction, edge, STATEDGE_DIRECT_ALL);
     }
+    addEdgeDirectInternal(direction, edge, type);
   }
 
   private void removeEdgeDirectInternal(int direction, StatEdge edge, int edgetype) {
-
-    Map<Integer, List<StatEdge>> mapEdges = direction == DIRECTION_BACKWARD ? mapPredEdges : mapSuccEdges;
-    Map<Integer, List<Statement>> mapStates = direction == DIRECTION_BACKWARD ? mapPredStates : mapSuccStates;
-
-    List<StatEdge> lst = mapEdges.get(edgetype);
-    if (lst != null) {
-      int index = lst.indexOf(edge);
-      if (index >= 0) {
-        lst.remove(index);
-        mapStates.get(edgetype).remove(index);
-      }
+    EdgeMap edges = direction == DIRECTION_BACKWARD ? predEdges : succEdges;
+    int index = edges.indexOf(edgetype, edge);
+    if (index >= 0) {
+      edges.remove(edgetype, index);
     }
   }
 
   private void removeEdgeInternal(int direction, StatEdge edge) {
-
     int type = edge.getType();
 
-    int[] arrtypes;
-    if (type == StatEdge.TYPE_EXCEPTION) {
-      arrtypes = new int[]{STATEDGE_ALL, StatEdge.TYPE_EXCEPTION};
-    }
-    else {
-      arrtypes = new int[]{STATEDGE_ALL, STATEDGE_DIRECT_ALL, type};
-    }
-
-    for (int edgetype : arrtypes) {
-      removeEdgeDirectInternal(direction, edge, edgetype);
+    removeEdgeDirectInternal(direction, edge, STATEDGE_ALL);
+    if (type != StatEdge.TYPE_EXCEPTION) {
+      removeEdgeDirectInternal(direction, edge, STATEDGE_DIRECT_ALL);
     }
+    removeEdgeDirectInternal(direction, edge, type);
   }
 
   public void addPredecessor(StatEdge edge) {
@@ -617,28 +577,15 @@ public class Statement implements IMatchable {
 
   public void changeEdgeNode(int direction, StatEdge edge, Statement value) {
 
-    Map<Integer, List<StatEdge>> mapEdges = direction == DIRECTION_BACKWARD ? mapPredEdges : mapSuccEdges;
-    Map<Integer, List<Statement>> mapStates = direction == DIRECTION_BACKWARD ? mapPredStates : mapSuccStates;
+    EdgeMap edges = direction == DIRECTION_BACKWARD ? predEdges : succEdges;
 
     int type = edge.getType();
 
-    int[] arrtypes;
-    if (type == StatEdge.TYPE_EXCEPTION) {
-      arrtypes = new int[]{STATEDGE_ALL, StatEdge.TYPE_EXCEPTION};
-    }
-    else {
-      arrtypes = new int[]{STATEDGE_ALL, STATEDGE_DIRECT_ALL, type};
-    }
-
-    for (int edgetype : arrtypes) {
-      List<StatEdge> lst = mapEdges.get(edgetype);
-      if (lst != null) {
-        int index = lst.indexOf(edge);
-        if (index >= 0) {
-          mapStates.get(edgetype).set(index, value);
-        }
-      }
+    edges.setNeighbour(STATEDGE_ALL, edge, value);
+    if (type != StatEdge.TYPE_EXCEPTION) {
+      edges.setNeighbour(STATEDGE_DIRECT_ALL, edge, value);
     }
+    edges.setNeighbour(type, edge, value);
 
     if (direction == DIRECTION_BACKWARD) {
       edge.setSource(value);
@@ -672,21 +619,18 @@ public class Statement implements IMatchable {
 
   private List<StatEdge> getEdges(int type, int direction) {
 
-    Map<Integer, List<StatEdge>> map = direction == DIRECTION_BACKWARD ? mapPredEdges : mapSuccEdges;
+    EdgeMap edges = direction == DIRECTION_BACKWARD ? predEdges : succEdges;
 
     List<StatEdge> res;
     if ((type & (type - 1)) == 0) {
-      res = map.get(type);
-      res = res == null ? new ArrayList<>() : new ArrayList<>(res);
+      res = new ArrayList<>(edges.size(type));
+      edges.addEdgesTo(type, res);
     }
     else {
       res = new ArrayList<>();
       for (int edgetype : StatEdge.TYPES) {
         if ((type & edgetype) != 0) {
-          List<StatEdge> lst = map.get(edgetype);
-          if (lst != null) {
-            res.addAll(lst);
-          }
+          edges.addEdgesTo(edgetype, res);
         }
       }
     }
@@ -696,21 +640,18 @@ public class Statement implements IMatchable {
 
   public List<Statement> getNeighbours(int type, int direction) {
 
-    Map<Integer, List<Statement>> map = direction == DIRECTION_BACKWARD ? mapPredStates : mapSuccStates;
+    EdgeMap edges = direction == DIRECTION_BACKWARD ? predEdges : succEdges;
 
     List<Statement> res;
     if ((type & (type - 1)) == 0) {
-      res = map.get(type);
-      res = res == null ? new ArrayList<>() : new ArrayList<>(res);
+      res = new ArrayList<>(edges.size(type));
+      edges.addNeighboursTo(type, res);
     }
     else {
       res = new ArrayList<>();
       for (int edgetype : StatEdge.TYPES) {
         if ((type & edgetype) != 0) {
-          List<Statement> lst = map.get(edgetype);
-          if (lst != null) {
-            res.addAll(lst);
-          }
+          edges.addNeighboursTo(edgetype, res);
         }
       }
     }
@@ -781,6 +722,10 @@ public class Statement implements IMatchable {
 
   public boolean isLabeled() {
 
+    if (labelEdges == null) {
+      return false;
+    }
+
     for (StatEdge edge : labelEdges) {
       if (edge.labeled && edge.explicit) {  // FIXME: consistent setting
         return true;
@@ -816,6 +761,9 @@ public class Statement implements IMatchable {
   }
 
   public HashSet<StatEdge> getLabelEdges() {  // FIXME: why HashSet?
+    if (labelEdges == null) {
+      labelEdges = new HashSet<>();
+    }
     return labelEdges;
   }
 
@@ -953,4 +901,133 @@ public class Statement implements IMatchable {
 
     return true;
   }
+
+  /**
+   * Edges of one direction of a statement together with the statements on their other end, kept per edge type and for
+   * {@link #STATEDGE_ALL} and {@link #STATEDGE_DIRECT_ALL}. The neighbours are stored separately from the edges, since an
+   * edge may be retargeted without telling the statements.
+   */
+  private static final class EdgeMap {
+    private static final int SLOT_COUNT = 7;
+
+    private final StatEdge[][] edges = new StatEdge[SLOT_COUNT][];
+    private final Statement[][] neighbours = new Statement[SLOT_COUNT][];
+    private final int[] sizes = new int[SLOT_COUNT];
+
+    private static int slot(int type) {
+      switch (type) {
+        case STATEDGE_ALL:
+          return 0;
+        case STATEDGE_DIRECT_ALL:
+          return 1;
+        case StatEdge.TYPE_REGULAR:
+          return 2;
+        case StatEdge.TYPE_EXCEPTION:
+          return 3;
+        case StatEdge.TYPE_BREAK:
+          return 4;
+        case StatEdge.TYPE_CONTINUE:
+          return 5;
+        case StatEdge.TYPE_FINALLYEXIT:
+          return 6;
+        default:
+          return -1;
+      }
+    }
+
+    int size(int type) {
+      int slot = slot(type);
+      return slot < 0 ? 0 : sizes[slot];
+    }
+
+    void add(int type, StatEdge edge, Statement neighbour) {
+      int slot = slot(type);
+      if (slot < 0) {
+        throw new RuntimeException("Invalid edge type!");
+      }
+
+      int size = sizes[slot];
+      if (edges[slot] == null) {
+        edges[slot] = new StatEdge[2];
+        neighbours[slot] = new Statement[2];
+      }
+      else if (size == edges[slot].length) {
+        edges[slot] = Arrays.copyOf(edges[slot], size * 2);
+        neighbours[slot] = Arrays.copyOf(neighbours[slot], size * 2);
+      }
+
+      edges[slot][size] = edge;
+      neighbours[slot][size] = neighbour;
+      sizes[slot] = size + 1;
+    }
+
+    int indexOf(int type, StatEdge edge) {
+      int slot = slot(type);
+      if (slot >= 0) {
+        StatEdge[] slotEdges = edges[slot];
+        for (int i = 0; i < sizes[slot]; i++) {
+          if (slotEdges[i] == edge) {
+            return i;
+          }
+        }
+      }
+      return -1;
+    }
+
+    void remove(int type, int index) {
+      int slot = slot(type);
+      int size = --sizes[slot];
+      if (index < size) {
+        System.arraycopy(edges[slot], index + 1, edges[slot], index, size - index);
+        System.arraycopy(neighbours[slot], index + 1, neighbours[slot], index, size - index);
+      }
+      edges[slot][size] = null;
+      neighbours[slot][size] = null;
+    }
+
+    void setNeighbour(int type, StatEdge edge, Statement neighbour) {
+      int index = indexOf(type, edge);
+      if (index >= 0) {
+        neighbours[slot(type)][index] = neighbour;
+      }
+    }
+
+    void addEdgesTo(int type, List<StatEdge> list) {
+      int slot = slot(type);
+      if (slot >= 0) {
+        for (int i = 0; i < sizes[slot]; i++) {
+          list.add(edges[slot][i]);
+        }
+      }
+    }
+
+    void addNeighboursTo(int type, List<Statement> list) {
+      int slot = slot(type);
+      if (slot >= 0) {
+        for (int i = 0; i < sizes[slot]; i++) {
+          list.add(neighbours[slot][i]);
+        }
+      }
+    }
+
+    // drops the exception edges and makes all edges the direct ones
+    void removeExceptionEdges() {
+      int exception = slot(StatEdge.TYPE_EXCEPTION);
+      edges[exception] = null;
+      neighbours[exception] = null;
+      sizes[exception] = 0;
+
+      int all = slot(STATEDGE_ALL);
+      int direct = slot(STATEDGE_DIRECT_ALL);
+      if (edges[direct] == null) {
+        edges[all] = null;
+        neighbours[all] = null;
+      }
+      else {
+        edges[all] = edges[direct].clone();
+        neighbours[all] = neighbours[direct].clone();
+      }
+      sizes[all] = sizes[direct];
+    }
+  }
 }
\ No newline at end of file
@@ -28,6 +28,9 @@ public class VarVersionNode implements IGraphNode {
 
   public LocalVariable lvt = null;
 
+  // dense index in the graph, see VarVersionsGraph#initDominators
+  int index = -1;
+
   public VarVersionNode(int var, int version) {
     this.var = var;
     this.version = version;
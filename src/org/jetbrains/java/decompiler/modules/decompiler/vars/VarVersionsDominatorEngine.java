@@ -0,0 +1,205 @@
+package org.jetbrains.java.decompiler.modules.decompiler.vars;
+
+import java.util.*;
+
+/**
+ * Dominators of the version nodes of a {@link VarVersionsGraph}. Every node without predecessors is a root, nodes
+ * reachable from several roots without a common dominator are roots of the dominator forest as well.
+ * Dominance queries compare the intervals of the nodes in a depth-first numbering of that forest.
+ */
+final class VarVersionsDominatorEngine {
+  private static final int[] NO_PREDS = new int[0];
+
+  // reverse postorder index of each node, by VarVersionNode#index; -1 if unreachable from the roots
+  private int[] orderIndices;
+  // reverse postorder index of the immediate dominator, the node itself for the roots of the forest
+  private int[] idoms;
+  // the subtree of a node in the dominator forest occupies [treeEnter, treeExit] of the depth-first numbering
+  private int[] treeEnter;
+  private int[] treeExit;
+
+  void initialize(List<VarVersionNode> nodes) {
+    List<VarVersionNode> order = getReversedPostOrder(nodes);
+    int count = order.size();
+
+    orderIndices = new int[nodes.size()];
+    Arrays.fill(orderIndices, -1);
+    for (int i = 0; i < count; i++) {
+      orderIndices[order.get(i).index] = i;
+    }
+
+    boolean[] roots = new boolean[count];
+    int[][] preds = new int[count][];
+    for (int i = 0; i < count; i++) {
+      VarVersionNode node = order.get(i);
+      roots[i] = node.preds.isEmpty();
+      preds[i] = roots[i] ? NO_PREDS : new int[node.preds.size()];
+      int size = 0;
+      for (VarVersionEdge edge : node.preds) {
+        preds[i][size++] = orderIndices[edge.source.index];
+      }
+    }
+
+    calcIDoms(roots, preds);
+    numberDominatorTree();
+  }
+
+  private void calcIDoms(boolean[] roots, int[][] preds) {
+    int count = preds.length;
+    idoms = new int[count];
+    Arrays.fill(idoms, -1);
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+
+      for (int i = 0; i < count; i++) {
+        int idom = -1;
+
+        if (!roots[i]) {
+          for (int pred : preds[i]) {
+            if (pred >= 0 && idoms[pred] >= 0) {
+              idom = idom < 0 ? pred : getCommonIDom(idom, pred, idoms);
+              if (idom < 0) {
+                break; // no idom found: merging point of two trees
+              }
+            }
+          }
+        }
+
+        if (idom < 0) {
+          idom = i;
+        }
+
+        if (idoms[i] != idom) {
+          idoms[i] = idom;
+          changed = true;
+        }
+      }
+    }
+  }
+
+  private static int getCommonIDom(int index1, int index2, int[] idoms) {
+    while (index1 != index2) {
+      if (index1 > index2) {
+        if (idoms[index1] == index1) { // root or merging point
+          return -1;
+        }
+        index1 = idoms[index1];
+      }
+      else {
+        if (idoms[index2] == index2) {
+          return -1;
+        }
+        index2 = idoms[index2];
+      }
+    }
+
+    return index1;
+  }
+
+  private void numberDominatorTree() {
+    int count = idoms.length;
+
+    // children lists of the dominator forest
+    int[] firstChild = new int[count];
+    int[] nextSibling = new int[count];
+    Arrays.fill(firstChild, -1);
+    for (int i = count - 1; i >= 0; i--) {
+      if (idoms[i] != i) {
+        nextSibling[i] = firstChild[idoms[i]];
+        firstChild[idoms[i]] = i;
+      }
+    }
+
+    treeEnter = new int[count];
+    treeExit = new int[count];
+    int[] stack = new int[count];
+    int[] next = new int[count];
+    int counter = 0;
+
+    for (int root = 0; root < count; root++) {
+      if (idoms[root] != root) {
+        continue;
+      }
+
+      int depth = 0;
+      stack[0] = root;
+      next[0] = firstChild[root];
+      treeEnter[root] = counter++;
+
+      while (depth >= 0) {
+        int child = next[depth];
+        if (child >= 0) {
+          next[depth] = nextSibling[child];
+          stack[++depth] = child;
+          next[depth] = firstChild[child];
+          treeEnter[child] = counter++;
+        }
+        else {
+          treeExit[stack[depth--]] = counter - 1;
+        }
+      }
+    }
+  }
+
+  boolean isDominator(VarVersionNode node, VarVersionNode dom) {
+    if (node == dom) {
+      return true;
+    }
+
+    int index = orderIndices[node.index];
+    if (index < 0) {
+      throw new RuntimeException("Inconsistent idom sequence discovered!");
+    }
+
+    int domIndex = orderIndices[dom.index];
+    return domIndex >= 0 && treeEnter[domIndex] <= treeEnter[index] && treeExit[index] <= treeExit[domIndex];
+  }
+
+  // depth-first search from every node without predecessors, the postorder of all searches reversed
+  private static List<VarVersionNode> getReversedPostOrder(List<VarVersionNode> nodes) {
+    List<VarVersionNode> postOrder = new ArrayList<>(nodes.size());
+    boolean[] visited = new boolean[nodes.size()];
+
+    List<Iterator<VarVersionEdge>> stackSuccs = new ArrayList<>();
+    List<VarVersionNode> stackNode = new ArrayList<>();
+
+    for (VarVersionNode root : nodes) {
+      if (!root.preds.isEmpty() || visited[root.index]) {
+        continue;
+      }
+
+      visited[root.index] = true;
+      stackNode.add(root);
+      stackSuccs.add(root.succs.iterator());
+
+      while (!stackNode.isEmpty()) {
+        int top = stackNode.size() - 1;
+        Iterator<VarVersionEdge> succs = stackSuccs.get(top);
+
+        VarVersionNode next = null;
+        while (succs.hasNext()) {
+          VarVersionNode succ = succs.next().dest;
+          if (!visited[succ.index]) {
+            next = succ;
+            break;
+          }
+        }
+
+        if (next != null) {
+          visited[next.index] = true;
+          stackNode.add(next);
+          stackSuccs.add(next.succs.iterator());
+        }
+        else {
+          postOrder.add(stackNode.remove(top));
+          stackSuccs.remove(top);
+        }
+      }
+    }
+
+    Collections.reverse(postOrder);
+    return postOrder;
+  }
+}
@@ -1,9 +1,6 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.jetbrains.java.decompiler.modules.decompiler.vars;
 
-import org.jetbrains.java.decompiler.modules.decompiler.decompose.GenericDominatorEngine;
-import org.jetbrains.java.decompiler.modules.decompiler.decompose.IGraph;
-import org.jetbrains.java.decompiler.modules.decompiler.decompose.IGraphNode;
 import org.jetbrains.java.decompiler.struct.attr.StructLocalVariableTableAttribute.LocalVariable;
 import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
@@ -12,7 +9,8 @@ import java.util.*;
 public class VarVersionsGraph {
   public final VBStyleCollection<VarVersionNode, VarVersionPair> nodes = new VBStyleCollection<>();
 
-  private GenericDominatorEngine engine;
+  private VarVersionsDominatorEngine engine;
+  private int nodeCount;
 
   public VarVersionNode createNode(VarVersionPair ver) {
     return createNode(ver, null);
@@ -33,22 +31,22 @@ public class VarVersionsGraph {
       return engine.isDominator(node, domnodes.iterator().next());
     }
     else {
-      Set<VarVersionNode> marked = new HashSet<>();
-
       if (domnodes.contains(node)) {
         return true;
       }
 
-      List<VarVersionNode> lstNodes = new LinkedList<>();
-      lstNodes.add(node);
+      BitSet marked = new BitSet(nodeCount);
+
+      Deque<VarVersionNode> queue = new ArrayDeque<>();
+      queue.add(node);
 
-      while (!lstNodes.isEmpty()) {
-        VarVersionNode nd = lstNodes.remove(0);
-        if (marked.contains(nd)) {
+      while (!queue.isEmpty()) {
+        VarVersionNode nd = queue.removeFirst();
+        if (marked.get(nd.index)) {
           continue;
         }
         else {
-          marked.add(nd);
+          marked.set(nd.index);
         }
 
         if (nd.preds.isEmpty()) {
@@ -57,8 +55,8 @@ public class VarVersionsGraph {
 
         for (VarVersionEdge edge : nd.preds) {
           VarVersionNode pred = edge.source;
-          if (!marked.contains(pred) && !domnodes.contains(pred)) {
-            lstNodes.add(pred);
+          if (!marked.get(pred.index) && !domnodes.contains(pred)) {
+            queue.add(pred);
           }
         }
       }
@@ -68,72 +66,20 @@ public class VarVersionsGraph {
   }
 
   public void initDominators() {
-    Set<VarVersionNode> roots = new HashSet<>();
-
+    // the collection may hold a node more than once
+    List<VarVersionNode> distinctNodes = new ArrayList<>(nodes.size());
     for (VarVersionNode node : nodes) {
-      if (node.preds.isEmpty()) {
-        roots.add(node);
-      }
+      node.index = -1;
     }
-
-    engine = new GenericDominatorEngine(new IGraph() {
-      @Override
-      public List<? extends IGraphNode> getReversePostOrderList() {
-        return getReversedPostOrder(roots);
-      }
-
-      @Override
-      public Set<? extends IGraphNode> getRoots() {
-        return new HashSet<IGraphNode>(roots);
+    for (VarVersionNode node : nodes) {
+      if (node.index < 0) {
+        node.index = distinctNodes.size();
+        distinctNodes.add(node);
       }
-    });
-
-    engine.initialize();
-  }
-
-  private static List<VarVersionNode> getReversedPostOrder(Collection<VarVersionNode> roots) {
-    List<VarVersionNode> lst = new LinkedList<>();
-    Set<VarVersionNode> setVisited = new HashSet<>();
-
-    for (VarVersionNode root : roots) {
-      List<VarVersionNode> lstTemp = new LinkedList<>();
-      addToReversePostOrderListIterative(root, lstTemp, setVisited);
-      lst.addAll(lstTemp);
     }
+    nodeCount = distinctNodes.size();
 
-    return lst;
-  }
-
-  private static void addToReversePostOrderListIterative(VarVersionNode root, List<? super VarVersionNode> lst, Set<? super VarVersionNode> setVisited) {
-    Map<VarVersionNode, List<VarVersionEdge>> mapNodeSuccs = new HashMap<>();
-    LinkedList<VarVersionNode> stackNode = new LinkedList<>();
-    LinkedList<Integer> stackIndex = new LinkedList<>();
-
-    stackNode.add(root);
-    stackIndex.add(0);
-
-    while (!stackNode.isEmpty()) {
-      VarVersionNode node = stackNode.getLast();
-      int index = stackIndex.removeLast();
-
-      setVisited.add(node);
-
-      List<VarVersionEdge> lstSuccs = mapNodeSuccs.computeIfAbsent(node, n -> new ArrayList<>(n.succs));
-      for (; index < lstSuccs.size(); index++) {
-        VarVersionNode succ = lstSuccs.get(index).dest;
-
-        if (!setVisited.contains(succ)) {
-          stackIndex.add(index + 1);
-          stackNode.add(succ);
-          stackIndex.add(0);
-          break;
-        }
-      }
-
-      if (index == lstSuccs.size()) {
-        lst.add(0, node);
-        stackNode.removeLast();
-      }
-    }
+    engine = new VarVersionsDominatorEngine();
+    engine.initialize(distinctNodes);
   }
-}
\ No newline at end of file
+}
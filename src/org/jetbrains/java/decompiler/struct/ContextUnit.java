@@ -2,8 +2,11 @@
 package org.jetbrains.java.decompiler.struct;
 
 import net.fabricmc.fernflower.api.IFabricResultSaver;
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.main.extern.IParallelResultSaver;
 import org.jetbrains.java.decompiler.main.extern.IResultSaver;
 import org.jetbrains.java.decompiler.struct.lazy.LazyLoader;
 import org.jetbrains.java.decompiler.struct.lazy.LazyLoader.Link;
@@ -14,10 +17,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.zip.ZipFile;
@@ -106,107 +108,138 @@ public class ContextUnit {
     classes = lstClasses;
   }
 
-  public void save() {
+  /**
+   * Decompiles the classes on {@code executor} and writes everything through {@code writeQueue}, so that the result saver
+   * is only ever called from the writer thread. Classes found in {@code classCache}, if given, are not decompiled again.
+   * @return a future completing once every class is written and the archive, if any, is closed
+   */
+  public CompletableFuture<Void> save(Executor executor, WriteQueue writeQueue, DecompiledClassCache classCache) {
     switch (type) {
       case TYPE_FOLDER:
-        // create folder
-        resultSaver.saveFolder(filename);
+        CompletableFuture<Void> folder = writeQueue.submit(() -> {
+          // create folder
+          resultSaver.saveFolder(filename);
 
-        // non-class files
-        for (String[] pair : otherEntries) {
-          resultSaver.copyFile(pair[0], filename, pair[1]);
-        }
-
-        // classes
-        for (int i = 0; i < classes.size(); i++) {
-          StructClass cl = classes.get(i);
-          if (!cl.isOwn()) {
-            continue;
-          }
-          String entryName = decompiledData.getClassEntryName(cl, classEntries.get(i));
-          if (entryName != null) {
-            String content = decompiledData.getClassContent(cl);
-            if (content != null) {
-              int[] mapping = null;
-              if (DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING)) {
-                mapping = DecompilerContext.getBytecodeSourceMapper().getOriginalLinesMapping();
-              }
-              resultSaver.saveClassFile(filename, cl.qualifiedName, entryName, content, mapping);
-            }
+          // non-class files
+          for (String[] pair : otherEntries) {
+            resultSaver.copyFile(pair[0], filename, pair[1]);
           }
-        }
+        });
 
-        break;
+        // classes, each to its own file
+        return CompletableFuture.allOf(folder, saveClasses(executor, writeQueue, classCache, (cl, entryName, content, mapping) -> () -> {
+          if (content != null) {
+            resultSaver.saveClassFile(filename, cl.qualifiedName, entryName, content, mapping);
+          }
+        }));
 
       case TYPE_JAR:
       case TYPE_ZIP:
-        // create archive file
-        resultSaver.saveFolder(archivePath);
-        resultSaver.createArchive(archivePath, filename, manifest);
+        CompletableFuture<Void> archive = writeQueue.submit(() -> {
+          // create archive file
+          resultSaver.saveFolder(archivePath);
+          resultSaver.createArchive(archivePath, filename, manifest);
+
+          // directory entries
+          for (String dirEntry : dirEntries) {
+            resultSaver.saveDirEntry(archivePath, filename, dirEntry);
+          }
 
-        // directory entries
-        for (String dirEntry : dirEntries) {
-          resultSaver.saveDirEntry(archivePath, filename, dirEntry);
-        }
+          // non-class entries
+          for (String[] pair : otherEntries) {
+            if (type != TYPE_JAR || !JarFile.MANIFEST_NAME.equalsIgnoreCase(pair[1])) {
+              resultSaver.copyEntry(pair[0], archivePath, filename, pair[1]);
+            }
+          }
+        });
 
-        // non-class entries
-        for (String[] pair : otherEntries) {
-          if (type != TYPE_JAR || !JarFile.MANIFEST_NAME.equalsIgnoreCase(pair[1])) {
-            resultSaver.copyEntry(pair[0], archivePath, filename, pair[1]);
+        // classes, the archive is closed right after the last one is written, even if decompiling some class failed
+        CompletableFuture<Void> classes = CompletableFuture.allOf(archive, saveClasses(executor, writeQueue, classCache, (cl, entryName, content, mapping) -> {
+          if (resultSaver instanceof IParallelResultSaver) {
+            return ((IParallelResultSaver) resultSaver).prepareClassEntry(archivePath, filename, cl.qualifiedName, entryName, content, mapping);
           }
-        }
+          return () -> {
+            if (resultSaver instanceof IFabricResultSaver) {
+              ((IFabricResultSaver) resultSaver).saveClassEntry(archivePath, filename, cl.qualifiedName, entryName, content, mapping);
+            } else {
+              resultSaver.saveClassEntry(archivePath, filename, cl.qualifiedName, entryName, content);
+            }
+          };
+        }));
+        return classes
+          .handle((result, error) -> writeQueue.submit(() -> resultSaver.closeArchive(archivePath, filename)))
+          .thenCompose(closed -> closed)
+          .thenCompose(closed -> classes);
+
+      default:
+        throw new IllegalStateException("Unknown unit type " + type);
+    }
+  }
+
+  private CompletableFuture<Void> saveClasses(Executor executor, WriteQueue writeQueue, DecompiledClassCache classCache, ClassContentSaver saver) {
+    final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    final DecompilerContext rootContext = DecompilerContext.getCurrentContext();
 
-        final List<Future<?>> futures = new LinkedList<>();
-        final ExecutorService decompileExecutor = Executors.newFixedThreadPool(Integer.parseInt((String) DecompilerContext.getProperty(IFernflowerPreferences.THREADS)));
-        final DecompilerContext rootContext = DecompilerContext.getCurrentContext();
-
-        // classes
-        for (int i = 0; i < classes.size(); i++) {
-          StructClass cl = classes.get(i);
-          String entryName = decompiledData.getClassEntryName(cl, classEntries.get(i));
-          if (entryName != null) {
-            futures.add(decompileExecutor.submit(() -> {
-              setContext(rootContext);
-              String content = decompiledData.getClassContent(cl);
-              int[] mapping = null;
-              if (DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING)) {
-                mapping = DecompilerContext.getBytecodeSourceMapper().getOriginalLinesMapping();
+    for (int i = 0; i < classes.size(); i++) {
+      StructClass cl = classes.get(i);
+      if (!cl.isOwn()) {
+        continue;
+      }
+      String entryName = decompiledData.getClassEntryName(cl, classEntries.get(i));
+      if (entryName != null) {
+        futures.add(CompletableFuture.supplyAsync(() -> {
+          setContext(rootContext);
+          String cacheKey = getCacheKey(classCache, cl);
+          DecompiledClassCache.CachedClass cached = cacheKey != null ? classCache.load(cacheKey) : null;
+
+          String content;
+          int[] mapping = null;
+          if (cached != null) {
+            content = cached.content;
+            mapping = cached.mapping;
+          }
+          else {
+            content = decompiledData.getClassContent(cl);
+            if (DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING)) {
+              mapping = DecompilerContext.getBytecodeSourceMapper().getOriginalLinesMapping();
+            }
+            if (cacheKey != null && content != null) {
+              try {
+                classCache.save(cacheKey, content, mapping);
               }
-              if (resultSaver instanceof IFabricResultSaver) {
-                ((IFabricResultSaver) resultSaver).saveClassEntry(archivePath, filename, cl.qualifiedName, entryName, content, mapping);
-              } else {
-                resultSaver.saveClassEntry(archivePath, filename, cl.qualifiedName, entryName, content);
+              catch (IOException ex) {
+                DecompilerContext.getLogger().writeMessage("Cannot cache class " + cl.qualifiedName, IFernflowerLogger.Severity.WARN, ex);
               }
-            }));
+            }
           }
-        }
+          // blocks this worker while the writer is behind
+          return writeQueue.submit(saver.prepare(cl, entryName, content, mapping));
+        }, executor).thenCompose(written -> written));
+      }
+    }
 
-        decompileExecutor.shutdown();
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+  }
 
-        for (Future<?> future : futures) {
-          try {
-            future.get();
-          } catch (InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
-          }
-        }
+  private static String getCacheKey(DecompiledClassCache classCache, StructClass cl) {
+    if (classCache == null) {
+      return null;
+    }
 
-        resultSaver.closeArchive(archivePath, filename);
+    ClassNode node = DecompilerContext.getClassProcessor().getMapRootClasses().get(cl.qualifiedName);
+    try {
+      return node != null ? classCache.getKey(node) : null;
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot read class " + cl.qualifiedName + " for the class cache", IFernflowerLogger.Severity.WARN, ex);
+      return null;
     }
   }
 
   public void setContext(DecompilerContext rootContext) {
     DecompilerContext current = DecompilerContext.getCurrentContext();
     if (current == null) {
-      current = new DecompilerContext(
-        new HashMap<>(rootContext.properties),
-        rootContext.logger,
-        rootContext.structContext,
-        rootContext.classProcessor,
-        rootContext.poolInterceptor,
-        rootContext.renamerFactory
-      );
-      DecompilerContext.setCurrentContext(current);
+      DecompilerContext.setCurrentContext(DecompilerContext.forkContext(rootContext));
     }
   }
 
@@ -218,7 +251,19 @@ public class ContextUnit {
     return own;
   }
 
+  public boolean isArchive() {
+    return type == TYPE_JAR || type == TYPE_ZIP;
+  }
+
   public List<StructClass> getClasses() {
     return classes;
   }
+
+  @FunctionalInterface
+  private interface ClassContentSaver {
+    /**
+     * Called on the decompiling thread, returns the action to run on the writer thread.
+     */
+    Runnable prepare(StructClass cl, String entryName, String content, int[] mapping);
+  }
 }
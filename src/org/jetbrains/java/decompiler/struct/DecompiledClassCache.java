@@ -0,0 +1,235 @@
+package org.jetbrains.java.decompiler.struct;
+
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.util.ZipArchiveReader;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Persistent cache of decompiled classes. An entry holds the source and line mapping of a top-level class and is keyed
+ * by the bytes of the class and all of its nested classes, the options that affect the output, the decompiler version,
+ * see {@link #getDecompilerVersion()}, and the classpath: the names of all own classes and the libraries.
+ */
+public class DecompiledClassCache {
+  private static final int MAGIC = 0x51464443; // "QFDC"
+  private static final int FORMAT_VERSION = 1;
+  private static final String LOCAL_BUILD_SUFFIX = "+local";
+  private static final Set<String> IGNORED_OPTIONS = new HashSet<>(Arrays.asList(
+    IFernflowerPreferences.THREADS,
+    IFernflowerPreferences.LOG_LEVEL,
+    IFernflowerPreferences.LIBRARY_INDEX_CACHE,
+    IFernflowerPreferences.WRITE_QUEUE_SIZE,
+    IFernflowerPreferences.DECOMPILED_CLASS_CACHE,
+    IFernflowerPreferences.PROFILE_PASSES,
+    IFernflowerPreferences.PARALLEL_METHODS_CODE_LENGTH));
+
+  private final File directory;
+  private final byte[] salt;
+
+  /**
+   * @param classNames the names of all own classes, which decide e.g. which imports can be shortened
+   * @param libraries the library archives and class files in the order they were added, which supply the supertypes
+   */
+  public DecompiledClassCache(File directory, String version, Map<String, Object> options, Collection<String> classNames,
+                              List<File> libraries) throws IOException {
+    this.directory = directory;
+
+    MessageDigest digest = newDigest();
+    update(digest, version);
+    for (Map.Entry<String, Object> option : new TreeMap<>(options).entrySet()) {
+      if (option.getValue() instanceof String && !IGNORED_OPTIONS.contains(option.getKey())) {
+        update(digest, option.getKey());
+        update(digest, (String)option.getValue());
+      }
+    }
+    for (String name : new TreeSet<>(classNames)) {
+      update(digest, name);
+    }
+    for (File library : libraries) {
+      update(digest, library.getAbsolutePath());
+      update(digest, library.length() + " " + library.lastModified());
+      if (!library.getName().endsWith(".class")) { // an archive keeps the CRC of each entry in its central directory
+        update(digest, Long.toString(ZipArchiveReader.getDirectoryChecksum(library)));
+      }
+    }
+    this.salt = digest.digest();
+  }
+
+  /**
+   * @return the version to key the cache with, or null if this build of the decompiler cannot be told apart from others
+   */
+  public static String getDecompilerVersion() throws IOException {
+    Package decompilerPackage = Fernflower.class.getPackage();
+    String version = decompilerPackage != null ? decompilerPackage.getImplementationVersion() : null;
+    CodeSource source = Fernflower.class.getProtectionDomain().getCodeSource();
+    File location = null;
+    if (source != null && source.getLocation() != null && "file".equals(source.getLocation().getProtocol())) {
+      try {
+        location = new File(source.getLocation().toURI());
+      }
+      catch (URISyntaxException | IllegalArgumentException ignored) { // not a plain file, treated as unknown
+      }
+    }
+    return getDecompilerVersion(version, location);
+  }
+
+  // every local build has the same version, so it is told apart by the bytes of its jar
+  static String getDecompilerVersion(String version, File location) throws IOException {
+    if (version != null && !version.endsWith(LOCAL_BUILD_SUFFIX)) {
+      return version;
+    }
+    if (location == null || !location.isFile()) {
+      return null;
+    }
+
+    MessageDigest digest = newDigest();
+    try (InputStream in = new FileInputStream(location)) {
+      byte[] buffer = new byte[1 << 16];
+      for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    return (version != null ? version : LOCAL_BUILD_SUFFIX) + "-" + toHex(digest.digest());
+  }
+
+  /**
+   * @return the cache key of the class {@code node}, or null if the bytes of one of its classes are not available
+   */
+  public String getKey(ClassNode node) throws IOException {
+    MessageDigest digest = newDigest();
+    digest.update(salt);
+
+    Set<String> visited = new HashSet<>();
+    Deque<ClassNode> queue = new ArrayDeque<>();
+    queue.add(node);
+    while (!queue.isEmpty()) {
+      ClassNode current = queue.removeFirst();
+      StructClass cl = current.classStruct;
+      if (visited.add(cl.qualifiedName)) {
+        byte[] bytes = cl.getLoader() != null ? cl.getLoader().getClassBytes(cl.qualifiedName) : null;
+        if (bytes == null) {
+          return null;
+        }
+        update(digest, cl.qualifiedName);
+        digest.update(bytes);
+      }
+      queue.addAll(current.nested);
+    }
+
+    return toHex(digest.digest());
+  }
+
+  /**
+   * @return the cached class, or null if there is none or it can't be read
+   */
+  public CachedClass load(String key) {
+    File file = getFile(key);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+
+      int[] mapping = null;
+      int mappingLength = in.readInt();
+      if (mappingLength >= 0) {
+        mapping = new int[mappingLength];
+        for (int i = 0; i < mappingLength; i++) {
+          mapping[i] = in.readInt();
+        }
+      }
+
+      byte[] content = new byte[in.readInt()];
+      in.readFully(content);
+      return new CachedClass(new String(content, StandardCharsets.UTF_8), mapping);
+    }
+    catch (IOException ex) { // truncated or foreign file, decompile again
+      return null;
+    }
+  }
+
+  public void save(String key, String content, int[] mapping) throws IOException {
+    File file = getFile(key);
+    File dir = file.getParentFile();
+    if (!(dir.mkdirs() || dir.isDirectory())) {
+      throw new IOException("Cannot create directory " + dir);
+    }
+
+    File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        if (mapping == null) {
+          out.writeInt(-1);
+        }
+        else {
+          out.writeInt(mapping.length);
+          for (int value : mapping) {
+            out.writeInt(value);
+          }
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+
+  private File getFile(String key) {
+    return new File(new File(directory, key.substring(0, 2)), key.substring(2) + ".src");
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    digest.update((byte)(bytes.length >>> 24));
+    digest.update((byte)(bytes.length >>> 16));
+    digest.update((byte)(bytes.length >>> 8));
+    digest.update((byte)bytes.length);
+    digest.update(bytes);
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  public static class CachedClass {
+    public final String content;
+    public final int[] mapping;
+
+    public CachedClass(String content, int[] mapping) {
+      this.content = content;
+      this.mapping = mapping;
+    }
+  }
+}
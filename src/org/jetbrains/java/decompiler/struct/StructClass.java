@@ -50,6 +50,13 @@ import java.util.Set;
 */
 public class StructClass extends StructMember {
   public static StructClass create(DataInputFullStream in, boolean own, LazyLoader loader) throws IOException {
+    return create(in, own, loader, false);
+  }
+
+  /**
+   * @param codeStripped whether {@code in} is a class file without method code, see {@link org.jetbrains.java.decompiler.struct.lazy.LibraryIndexCache#stripCode}
+   */
+  public static StructClass create(DataInputFullStream in, boolean own, LazyLoader loader, boolean codeStripped) throws IOException {
     in.discard(4);
     int minorVersion = in.readUnsignedShort();
     int majorVersion = in.readUnsignedShort();
@@ -96,7 +103,8 @@ public class StructClass extends StructMember {
     }
 
     StructClass cl = new StructClass(
-      accessFlags, attributes, qualifiedName, superClass, own, loader, minorVersion, majorVersion, interfaces, interfaceNames, fields, methods, signature);
+      accessFlags, attributes, qualifiedName, superClass, own, loader, minorVersion, majorVersion, interfaces, interfaceNames, fields, methods, signature,
+      codeStripped);
     if (loader == null) cl.pool = pool;
     return cl;
   }
@@ -112,6 +120,7 @@ public class StructClass extends StructMember {
   private final VBStyleCollection<StructField, String> fields;
   private final VBStyleCollection<StructMethod, String> methods;
   private final GenericClassDescriptor signature;
+  private final boolean codeStripped;
 
   private ConstantPool pool;
 
@@ -127,7 +136,8 @@ public class StructClass extends StructMember {
                       String[] interfaceNames,
                       VBStyleCollection<StructField, String> fields,
                       VBStyleCollection<StructMethod, String> methods,
-                      GenericClassDescriptor signature) {
+                      GenericClassDescriptor signature,
+                      boolean codeStripped) {
     super(accessFlags, attributes);
     this.qualifiedName = qualifiedName;
     this.superClass = superClass;
@@ -140,6 +150,7 @@ public class StructClass extends StructMember {
     this.fields = fields;
     this.methods = methods;
     this.signature = signature;
+    this.codeStripped = codeStripped;
   }
 
   public boolean hasField(String name, String descriptor) {
@@ -233,6 +244,10 @@ public class StructClass extends StructMember {
     return own;
   }
 
+  public boolean isCodeStripped() {
+    return codeStripped;
+  }
+
   public LazyLoader getLoader() {
     return loader;
   }
@@ -2,21 +2,32 @@
 package org.jetbrains.java.decompiler.struct;
 
 import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.main.extern.IResultSaver;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger.Severity;
 import org.jetbrains.java.decompiler.struct.gen.generics.GenericMain;
 import org.jetbrains.java.decompiler.struct.gen.generics.GenericMethodDescriptor;
 import org.jetbrains.java.decompiler.struct.lazy.LazyLoader;
+import org.jetbrains.java.decompiler.struct.lazy.LibraryIndexCache;
 import org.jetbrains.java.decompiler.util.DataInputFullStream;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -28,6 +39,14 @@ public class StructContext {
   private final Map<String, ContextUnit> units = new HashMap<>();
   private final Map<String, StructClass> classes = new HashMap<>();
   private final Map<String, List<String>> abstractNames = new HashMap<>();
+  // library classes are only parsed once they are looked up; maps them to the cached index entry to parse from, if any
+  private final Map<String, LibraryIndexCache.ClassEntry> lazyClasses = new HashMap<>();
+  // parsed library classes, softly held so that they can be dropped under memory pressure; a dropped class is parsed
+  // again, but a name never maps to two live instances; entries of dropped classes are removed through the queue
+  private final Map<String, LibraryClassReference> libraryClasses = new HashMap<>();
+  private final ReferenceQueue<StructClass> droppedLibraryClasses = new ReferenceQueue<>();
+  private final List<File> libraryFiles = new ArrayList<>();
+  private LibraryIndexCache libraryIndexCache;
 
   public StructContext(IResultSaver saver, IDecompiledData decompiledData, LazyLoader loader) {
     this.saver = saver;
@@ -39,10 +58,73 @@ public class StructContext {
   }
 
   public StructClass getClass(String name) {
-    return classes.get(name);
+    StructClass cl = classes.get(name);
+    if (cl == null && lazyClasses.containsKey(name)) {
+      cl = getLibraryClass(name);
+    }
+    return cl;
+  }
+
+  private StructClass getLibraryClass(String name) {
+    synchronized (libraryClasses) {
+      LibraryClassReference ref = libraryClasses.get(name);
+      StructClass cl = ref != null ? ref.get() : null;
+      if (cl != null) {
+        return cl;
+      }
+    }
+
+    StructClass cl;
+    LibraryIndexCache.ClassEntry entry = lazyClasses.get(name);
+    try (DataInputFullStream in = entry != null ? new DataInputFullStream(entry.getBytes()) : loader.getClassStream(name)) {
+      cl = StructClass.create(in, false, loader, entry != null);
+    }
+    catch (IOException ex) {
+      String message = "Corrupted class file: " + name;
+      DecompilerContext.getLogger().writeMessage(message, ex);
+      throw new RuntimeException(ex);
+    }
+
+    if (!name.equals(cl.qualifiedName)) {
+      String message = "Library class " + name + " is actually named " + cl.qualifiedName + ", ignored";
+      DecompilerContext.getLogger().writeMessage(message, Severity.WARN);
+      return null;
+    }
+
+    synchronized (libraryClasses) {
+      LibraryClassReference ref = libraryClasses.get(name);
+      StructClass existing = ref != null ? ref.get() : null;
+      if (existing != null) { // parsed concurrently by another thread
+        return existing;
+      }
+      pruneLibraryClasses();
+      libraryClasses.put(name, new LibraryClassReference(name, cl, droppedLibraryClasses));
+      return cl;
+    }
+  }
+
+  private void pruneLibraryClasses() {
+    Reference<? extends StructClass> ref;
+    while ((ref = droppedLibraryClasses.poll()) != null) {
+      libraryClasses.remove(((LibraryClassReference)ref).name, ref);
+    }
+  }
+
+  // as with classes parsed up front, a class added later replaces an earlier one of the same name
+  private void addLazyClass(String name, LazyLoader.Link link, LibraryIndexCache.ClassEntry entry) {
+    classes.remove(name);
+    lazyClasses.put(name, entry);
+    loader.addClassLink(name, link);
+    synchronized (libraryClasses) {
+      libraryClasses.remove(name);
+    }
   }
 
   public void reloadContext() throws IOException {
+    synchronized (libraryClasses) {
+      libraryClasses.clear();
+    }
+
     for (ContextUnit unit : units.values()) {
       for (StructClass cl : unit.getClasses()) {
         classes.remove(cl.qualifiedName);
@@ -58,18 +140,42 @@ public class StructContext {
   }
 
   public void saveContext() {
-    for (ContextUnit unit : units.values()) {
-      if (unit.isOwn()) {
-        unit.save();
+    // one pool for the whole run, so that the stragglers of one unit overlap with the classes of the next
+    int threads = Integer.parseInt((String)DecompilerContext.getProperty(IFernflowerPreferences.THREADS));
+    ExecutorService executor = Executors.newWorkStealingPool(Math.max(threads, 1));
+    int queueSize = Integer.parseInt((String)DecompilerContext.getProperty(IFernflowerPreferences.WRITE_QUEUE_SIZE));
+    DecompiledClassCache classCache = getClassCache();
+
+    try (WriteQueue writeQueue = new WriteQueue(queueSize, DecompilerContext.getCurrentContext())) {
+      boolean oneArchiveAtATime = saver != null && !saver.supportsConcurrentArchives();
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+      for (ContextUnit unit : units.values()) {
+        if (unit.isOwn()) {
+          CompletableFuture<Void> future = unit.save(executor, writeQueue, classCache);
+          if (oneArchiveAtATime && unit.isArchive()) {
+            future.join(); // the next archive can only be created once this one is closed
+          }
+          futures.add(future);
+        }
       }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+    catch (CompletionException ex) {
+      throw new RuntimeException(ex.getCause());
+    }
+    finally {
+      executor.shutdown();
     }
   }
 
   public void addSpace(File file, boolean isOwn) {
-    addSpace("", file, isOwn, 0);
+    try (SpaceLoader spaceLoader = new SpaceLoader()) {
+      addSpace("", file, isOwn, 0, spaceLoader);
+      spaceLoader.merge();
+    }
   }
 
-  private void addSpace(String path, File file, boolean isOwn, int level) {
+  private void addSpace(String path, File file, boolean isOwn, int level, SpaceLoader spaceLoader) {
     if (file.isDirectory()) {
       if (level == 1) path += file.getName();
       else if (level > 1) path += "/" + file.getName();
@@ -77,22 +183,26 @@ public class StructContext {
       File[] files = file.listFiles();
       if (files != null) {
         for (int i = files.length - 1; i >= 0; i--) {
-          addSpace(path, files[i], isOwn, level + 1);
+          addSpace(path, files[i], isOwn, level + 1, spaceLoader);
         }
       }
     }
     else {
       String filename = file.getName();
 
+      if (!isOwn && (filename.endsWith(".jar") || filename.endsWith(".zip") || filename.endsWith(".class"))) {
+        libraryFiles.add(file);
+      }
+
       boolean isArchive = false;
       try {
         if (filename.endsWith(".jar")) {
           isArchive = true;
-          addArchive(path, file, ContextUnit.TYPE_JAR, isOwn);
+          addArchive(path, file, ContextUnit.TYPE_JAR, isOwn, spaceLoader);
         }
         else if (filename.endsWith(".zip")) {
           isArchive = true;
-          addArchive(path, file, ContextUnit.TYPE_ZIP, isOwn);
+          addArchive(path, file, ContextUnit.TYPE_ZIP, isOwn, spaceLoader);
         }
       }
       catch (IOException ex) {
@@ -110,18 +220,15 @@ public class StructContext {
         units.put(path, unit);
       }
 
-      if (filename.endsWith(".class")) {
-        try (DataInputFullStream in = loader.getClassStream(file.getAbsolutePath(), null)) {
-          StructClass cl = StructClass.create(in, isOwn, loader);
-          classes.put(cl.qualifiedName, cl);
-          unit.addClass(cl, filename);
-          loader.addClassLink(cl.qualifiedName, new LazyLoader.Link(file.getAbsolutePath(), null));
-        }
-        catch (IOException ex) {
-          String message = "Corrupted class file: " + file;
-          DecompilerContext.getLogger().writeMessage(message, ex);
-          throw new RuntimeException(ex);
-        }
+      boolean lazy = filename.endsWith(".class") && !isOwn && level > 0;
+      String name = lazy ? (path.isEmpty() ? "" : path + "/") + filename.substring(0, filename.length() - ".class".length()) : null;
+      if (lazy && isConfirmedPath(spaceLoader, file.getParent(), name, () -> InterpreterUtil.getBytes(file))) {
+        spaceLoader.addLazy(name, new LazyLoader.Link(file.getAbsolutePath(), null), null);
+      }
+      else if (filename.endsWith(".class")) {
+        String fullPath = file.getAbsolutePath();
+        PendingClass entry = new PendingClass(unit, filename, new LazyLoader.Link(fullPath, null), file.toString());
+        spaceLoader.submit(entry, isOwn, false, () -> InterpreterUtil.getBytes(file));
       }
       else {
         unit.addOtherEntry(file.getAbsolutePath(), filename);
@@ -129,43 +236,172 @@ public class StructContext {
     }
   }
 
-  private void addArchive(String path, File file, int type, boolean isOwn) throws IOException {
+  private void addArchive(String path, File file, int type, boolean isOwn, SpaceLoader spaceLoader) throws IOException {
     DecompilerContext.getLogger().writeMessage("Adding Archive: " + file.getAbsolutePath(), Severity.INFO);
-    try (ZipFile archive = type == ContextUnit.TYPE_JAR ? new JarFile(file) : new ZipFile(file)) {
-      Enumeration<? extends ZipEntry> entries = archive.entries();
-      while (entries.hasMoreElements()) {
-        ZipEntry entry = entries.nextElement();
 
-        ContextUnit unit = units.get(path + "/" + file.getName());
-        if (unit == null) {
-          unit = new ContextUnit(type, path, file.getName(), isOwn, saver, decompiledData);
-          if (type == ContextUnit.TYPE_JAR) {
-            unit.setManifest(((JarFile)archive).getManifest());
-          }
-          units.put(path + "/" + file.getName(), unit);
-        }
-
-        String name = entry.getName();
-        if (!entry.isDirectory()) {
-          if (name.endsWith(".class")) {
-            byte[] bytes = InterpreterUtil.getBytes(archive, entry);
-            DecompilerContext.getLogger().writeMessage("  Loading Class: " + name, Severity.INFO);
-            StructClass cl = StructClass.create(new DataInputFullStream(bytes), isOwn, loader);
-            classes.put(cl.qualifiedName, cl);
-            unit.addClass(cl, name);
-            loader.addClassLink(cl.qualifiedName, new LazyLoader.Link(file.getAbsolutePath(), name));
-          }
-          else {
-            unit.addOtherEntry(file.getAbsolutePath(), name);
+    LibraryIndexCache cache = isOwn ? null : getLibraryCache();
+    if (cache != null && addCachedArchive(path, file, type, cache, spaceLoader)) {
+      return;
+    }
+
+    ZipFile archive = type == ContextUnit.TYPE_JAR ? new JarFile(file) : new ZipFile(file);
+    spaceLoader.archives.add(archive); // closed once all entries are parsed
+
+    PendingIndex index = cache != null ? new PendingIndex(file, cache) : null;
+    if (index != null) {
+      spaceLoader.indexes.add(index);
+    }
+
+    Enumeration<? extends ZipEntry> entries = archive.entries();
+    while (entries.hasMoreElements()) {
+      ZipEntry entry = entries.nextElement();
+
+      ContextUnit unit = units.get(path + "/" + file.getName());
+      if (unit == null) {
+        unit = new ContextUnit(type, path, file.getName(), isOwn, saver, decompiledData);
+        if (type == ContextUnit.TYPE_JAR) {
+          unit.setManifest(((JarFile)archive).getManifest());
+        }
+        units.put(path + "/" + file.getName(), unit);
+      }
+
+      String name = entry.getName();
+      if (!entry.isDirectory()) {
+        if (name.endsWith(".class") && !isOwn && index == null && isCanonicalEntry(name) &&
+            isConfirmedPath(spaceLoader, file + "!" + directoryOf(name), name.substring(0, name.length() - ".class".length()),
+                            () -> InterpreterUtil.getBytes(archive, entry))) {
+          spaceLoader.addLazy(name.substring(0, name.length() - ".class".length()), new LazyLoader.Link(file.getAbsolutePath(), name), null);
+        }
+        else if (name.endsWith(".class")) {
+          PendingClass pending = new PendingClass(unit, name, new LazyLoader.Link(file.getAbsolutePath(), name), file + "!" + name);
+          spaceLoader.submit(pending, isOwn, index != null, () -> InterpreterUtil.getBytes(archive, entry));
+          if (index != null) {
+            index.classes.add(pending);
           }
         }
         else {
-          unit.addDirEntry(name);
+          unit.addOtherEntry(file.getAbsolutePath(), name);
+          if (index != null) {
+            index.index.otherEntries.add(name);
+          }
+        }
+      }
+      else {
+        unit.addDirEntry(name);
+        if (index != null) {
+          index.index.dirEntries.add(name);
         }
       }
     }
   }
 
+  // entries whose path does not give away the class name are parsed up front
+  private static boolean isCanonicalEntry(String name) {
+    return !name.startsWith("META-INF/") && !name.endsWith("module-info.class");
+  }
+
+  private static String directoryOf(String name) {
+    return name.substring(0, Math.max(name.lastIndexOf('/'), 0));
+  }
+
+  // a name is only derived from the path once the first class of the directory confirms that the path starts at the
+  // classpath root (not the case e.g. in BOOT-INF/classes, or for a folder given above the root); otherwise the whole
+  // directory is parsed up front
+  private boolean isConfirmedPath(SpaceLoader spaceLoader, String directory, String name, ClassSource source) {
+    return spaceLoader.confirmedDirectories.computeIfAbsent(directory, k -> {
+      try (DataInputFullStream in = new DataInputFullStream(source.read())) {
+        return name.equals(StructClass.create(in, false, loader).qualifiedName);
+      }
+      catch (IOException ex) {
+        return false; // reported when parsed up front
+      }
+    });
+  }
+
+  private boolean addCachedArchive(String path, File file, int type, LibraryIndexCache cache, SpaceLoader spaceLoader) {
+    LibraryIndexCache.Index index;
+    try {
+      index = cache.load(file);
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot read library index of " + file, Severity.WARN, ex);
+      return false;
+    }
+    if (index == null) {
+      return false;
+    }
+
+    if (!index.dirEntries.isEmpty() || !index.otherEntries.isEmpty() || !index.classes.isEmpty()) {
+      // library units are never saved, so there is no need for the manifest
+      ContextUnit unit = units.computeIfAbsent(path + "/" + file.getName(), k -> new ContextUnit(type, path, file.getName(), false, saver, decompiledData));
+      for (String name : index.dirEntries) {
+        unit.addDirEntry(name);
+      }
+      for (String name : index.otherEntries) {
+        unit.addOtherEntry(file.getAbsolutePath(), name);
+      }
+      for (LibraryIndexCache.ClassEntry entry : index.classes) {
+        spaceLoader.addLazy(entry.qualifiedName, new LazyLoader.Link(file.getAbsolutePath(), entry.entryName), entry);
+      }
+    }
+    return true;
+  }
+
+  private DecompiledClassCache getClassCache() {
+    Object directory = DecompilerContext.getProperty(IFernflowerPreferences.DECOMPILED_CLASS_CACHE);
+    if (directory == null || directory.toString().isEmpty()) {
+      return null;
+    }
+    // renamed names depend on the whole context
+    if (DecompilerContext.getOption(IFernflowerPreferences.RENAME_ENTITIES)) {
+      DecompilerContext.getLogger().writeMessage("Entities are renamed, the class cache is disabled", Severity.INFO);
+      return null;
+    }
+
+    // without a version, entries of an older build could be served
+    String version;
+    try {
+      version = DecompiledClassCache.getDecompilerVersion();
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot read the decompiler jar, the class cache is disabled", Severity.WARN, ex);
+      return null;
+    }
+    if (version == null) {
+      DecompilerContext.getLogger().writeMessage("Decompiler version is unknown, the class cache is disabled", Severity.WARN);
+      return null;
+    }
+
+    List<String> classNames = new ArrayList<>();
+    for (ContextUnit unit : units.values()) {
+      if (unit.isOwn()) {
+        for (StructClass cl : unit.getClasses()) {
+          classNames.add(cl.qualifiedName);
+        }
+      }
+    }
+
+    try {
+      return new DecompiledClassCache(new File(directory.toString()), version, DecompilerContext.getCurrentContext().properties,
+                                      classNames, libraryFiles);
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot read the libraries, the class cache is disabled", Severity.WARN, ex);
+      return null;
+    }
+  }
+
+  private LibraryIndexCache getLibraryCache() {
+    Object directory = DecompilerContext.getProperty(IFernflowerPreferences.LIBRARY_INDEX_CACHE);
+    if (directory == null || directory.toString().isEmpty()) {
+      return null;
+    }
+    if (libraryIndexCache == null || !libraryIndexCache.getDirectory().equals(new File(directory.toString()))) {
+      libraryIndexCache = new LibraryIndexCache(new File(directory.toString()));
+    }
+    return libraryIndexCache;
+  }
+
   public void addData(String path, String cls, byte[] data, boolean isOwn) throws IOException {
         ContextUnit unit = units.get(path);
         if (unit == null) {
@@ -175,10 +411,15 @@ public class StructContext {
 
         StructClass cl = StructClass.create(new DataInputFullStream(data), isOwn, loader);
         classes.put(cl.qualifiedName, cl);
+        lazyClasses.remove(cl.qualifiedName);
         unit.addClass(cl, cls);
         loader.addClassLink(cl.qualifiedName, new LazyLoader.Link(path, cls, data));
   }
 
+  /**
+   * @return own classes and the library classes that had to be parsed up front; other library classes are only reachable
+   * through {@link #getClass(String)}
+   */
   public Map<String, StructClass> getClasses() {
     return classes;
   }
@@ -246,4 +487,140 @@ public class StructContext {
     List<String> params = this.abstractNames.get(className + ' ' + methodName + ' ' + descriptor);
     return params != null && index < params.size() ? params.get(index) : _default;
   }
+
+  private static final class LibraryClassReference extends SoftReference<StructClass> {
+    private final String name;
+
+    private LibraryClassReference(String name, StructClass cl, ReferenceQueue<StructClass> queue) {
+      super(cl, queue);
+      this.name = name;
+    }
+  }
+
+  @FunctionalInterface
+  private interface ClassSource {
+    byte[] read() throws IOException;
+  }
+
+  private final class SpaceLoader implements AutoCloseable {
+    private final ExecutorService executor;
+    private final DecompilerContext rootContext = DecompilerContext.getCurrentContext();
+    private final List<PendingClass> pending = new ArrayList<>();
+    private final List<ZipFile> archives = new ArrayList<>();
+    private final List<PendingIndex> indexes = new ArrayList<>();
+    private final Map<String, Boolean> confirmedDirectories = new HashMap<>();
+
+    private SpaceLoader() {
+      int threads = Integer.parseInt((String)DecompilerContext.getProperty(IFernflowerPreferences.THREADS));
+      executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+    }
+
+    private void submit(PendingClass entry, boolean isOwn, boolean strip, ClassSource source) {
+      entry.future = executor.submit(() -> {
+        if (DecompilerContext.getCurrentContext() == null) {
+          DecompilerContext.setCurrentContext(DecompilerContext.forkContext(rootContext));
+        }
+        byte[] bytes = source.read();
+        if (strip) {
+          entry.stripped = LibraryIndexCache.stripCode(bytes);
+        }
+        return StructClass.create(new DataInputFullStream(bytes), isOwn, loader);
+      });
+      pending.add(entry);
+    }
+
+    private void addLazy(String name, LazyLoader.Link link, LibraryIndexCache.ClassEntry indexEntry) {
+      PendingClass entry = new PendingClass(null, name, link, null);
+      entry.indexEntry = indexEntry;
+      pending.add(entry);
+    }
+
+    // merge in discovery order, so that the result does not depend on the scheduling of the workers
+    private void merge() {
+      for (PendingClass entry : pending) {
+        if (entry.future == null) {
+          addLazyClass(entry.entryName, entry.link, entry.indexEntry);
+          continue;
+        }
+
+        StructClass cl;
+        try {
+          cl = entry.future.get();
+        }
+        catch (ExecutionException ex) {
+          String message = "Corrupted class file: " + entry.source;
+          DecompilerContext.getLogger().writeMessage(message, ex.getCause());
+          throw new RuntimeException(ex.getCause());
+        }
+        catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(ex);
+        }
+
+        if (entry.link.internalPath != null) {
+          DecompilerContext.getLogger().writeMessage("  Loading Class: " + entry.entryName, Severity.INFO);
+        }
+        entry.qualifiedName = cl.qualifiedName;
+        classes.put(cl.qualifiedName, cl);
+        lazyClasses.remove(cl.qualifiedName);
+        entry.unit.addClass(cl, entry.entryName);
+        loader.addClassLink(cl.qualifiedName, entry.link);
+      }
+
+      for (PendingIndex index : indexes) {
+        for (PendingClass entry : index.classes) {
+          index.index.classes.add(new LibraryIndexCache.ClassEntry(entry.entryName, entry.qualifiedName, entry.stripped));
+        }
+        try {
+          index.cache.save(index.archive, index.index);
+        }
+        catch (IOException ex) {
+          DecompilerContext.getLogger().writeMessage("Cannot write library index of " + index.archive, Severity.WARN, ex);
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      executor.shutdownNow();
+      for (ZipFile archive : archives) {
+        try {
+          archive.close();
+        }
+        catch (IOException ex) {
+          DecompilerContext.getLogger().writeMessage("Cannot close " + archive.getName(), Severity.WARN);
+        }
+      }
+    }
+  }
+
+  private static final class PendingClass {
+    private final ContextUnit unit;
+    private final String entryName;
+    private final LazyLoader.Link link;
+    private final String source;
+    private Future<StructClass> future;
+    private byte[] stripped;
+    private String qualifiedName;
+    private LibraryIndexCache.ClassEntry indexEntry; // for classes that are added without being parsed
+
+    private PendingClass(ContextUnit unit, String entryName, LazyLoader.Link link, String source) {
+      this.unit = unit;
+      this.entryName = entryName;
+      this.link = link;
+      this.source = source;
+    }
+  }
+
+  private static final class PendingIndex {
+    private final File archive;
+    private final LibraryIndexCache cache;
+    private final LibraryIndexCache.Index index = new LibraryIndexCache.Index();
+    private final List<PendingClass> classes = new ArrayList<>();
+
+    private PendingIndex(File archive, LibraryIndexCache cache) {
+      this.archive = archive;
+      this.cache = cache;
+    }
+  }
 }
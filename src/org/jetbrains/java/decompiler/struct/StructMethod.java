@@ -67,6 +67,7 @@ public class StructMethod extends StructMember {
   private final int localVariables;
   private final int codeLength;
   private final int codeFullLength;
+  private final int codeOffset;
   private InstructionSequence seq = null;
   private boolean expanded = false;
   private final String classQualifiedName;
@@ -89,9 +90,10 @@ public class StructMethod extends StructMember {
       this.localVariables = code.localVariables;
       this.codeLength = code.codeLength;
       this.codeFullLength = code.codeFullLength;
+      this.codeOffset = code.codeOffset;
     }
     else {
-      this.localVariables = this.codeLength = this.codeFullLength = -1;
+      this.localVariables = this.codeLength = this.codeFullLength = this.codeOffset = -1;
     }
     this.classQualifiedName = classQualifiedName;
     this.signature = signature;
@@ -99,7 +101,7 @@ public class StructMethod extends StructMember {
 
   public void expandData(StructClass classStruct) throws IOException {
     if (codeLength >= 0 && !expanded) {
-      byte[] code = classStruct.getLoader().loadBytecode(classStruct, this, codeFullLength);
+      byte[] code = classStruct.getLoader().loadBytecode(classStruct, codeOffset, codeFullLength);
       seq = parseBytecode(new DataInputFullStream(code), codeLength, classStruct.getPool());
       expanded = true;
     }
@@ -376,6 +378,10 @@ public class StructMethod extends StructMember {
     return codeLength >= 0;
   }
 
+  public int getCodeLength() {
+    return codeLength;
+  }
+
   public int getLocalVariables() {
     return localVariables;
   }
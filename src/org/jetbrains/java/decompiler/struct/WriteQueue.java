@@ -0,0 +1,90 @@
+package org.jetbrains.java.decompiler.struct;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hands decompiled classes over from the workers to a single writer thread. The queue is bounded, so the workers block
+ * once the writer falls behind instead of piling up finished sources in memory.
+ */
+public final class WriteQueue implements AutoCloseable {
+  private static final Runnable END = () -> { };
+
+  private final BlockingQueue<Runnable> queue;
+  private final Thread writer;
+
+  public WriteQueue(int capacity, DecompilerContext rootContext) {
+    queue = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+    writer = new Thread(() -> {
+      DecompilerContext.setCurrentContext(DecompilerContext.forkContext(rootContext));
+      drain();
+    }, "Decompiler writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Queues {@code write} for the writer thread, blocking while the queue is full. Called on the writer thread itself,
+   * for example from a callback of an earlier write, {@code write} runs right away instead of waiting for a free slot
+   * that only the writer could make.
+   * @return a future completing on the writer thread once {@code write} has run
+   */
+  public CompletableFuture<Void> submit(Runnable write) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    Runnable task = () -> {
+      try {
+        write.run();
+        future.complete(null);
+      }
+      catch (Throwable t) {
+        future.completeExceptionally(t);
+      }
+    };
+    if (Thread.currentThread() == writer) {
+      task.run();
+    }
+    else {
+      put(task);
+    }
+    return future;
+  }
+
+  private void put(Runnable task) {
+    try {
+      queue.put(task);
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private void drain() {
+    try {
+      for (Runnable task = queue.take(); task != END; task = queue.take()) {
+        task.run();
+      }
+    }
+    catch (InterruptedException ignored) {
+      // abandoned, nobody waits for the remaining writes
+    }
+  }
+
+  /**
+   * Lets the writer finish everything queued so far and waits for it to exit.
+   */
+  @Override
+  public void close() {
+    put(END);
+    try {
+      writer.join();
+    }
+    catch (InterruptedException ex) {
+      writer.interrupt();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -27,6 +27,7 @@ public class StructCodeAttribute extends StructGeneralAttribute {
   public int localVariables = 0;
   public int codeLength = 0;
   public int codeFullLength = 0;
+  public int codeOffset = -1; // position of code[] in the class file
   public Map<String, StructGeneralAttribute> codeAttributes;
 
   @Override
@@ -34,6 +35,7 @@ public class StructCodeAttribute extends StructGeneralAttribute {
     data.discard(2);
     localVariables = data.readUnsignedShort();
     codeLength = data.readInt();
+    codeOffset = data.getOffset();
     data.discard(codeLength);
     int excLength = data.readUnsignedShort();
     data.discard(excLength * 8);
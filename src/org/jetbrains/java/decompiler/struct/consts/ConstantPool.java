@@ -173,6 +173,10 @@ public class ConstantPool implements NewClassNameBuilder {
     return new String[]{elementName, descriptor};
   }
 
+  public int size() {
+    return pool.size();
+  }
+
   public PooledConstant getConstant(int index) {
     return pool.get(index);
   }
@@ -3,18 +3,26 @@ package org.jetbrains.java.decompiler.struct.lazy;
 
 import org.jetbrains.java.decompiler.main.extern.IBytecodeProvider;
 import org.jetbrains.java.decompiler.struct.StructClass;
-import org.jetbrains.java.decompiler.struct.StructMethod;
-import org.jetbrains.java.decompiler.struct.attr.StructGeneralAttribute;
 import org.jetbrains.java.decompiler.struct.consts.ConstantPool;
 import org.jetbrains.java.decompiler.util.DataInputFullStream;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class LazyLoader {
+  private static final int MAX_CACHED_CONSTANTS = 1 << 18;
+
   private final Map<String, Link> mapClassLinks = new HashMap<>();
   private final IBytecodeProvider provider;
+  // parsed pools of classes whose StructClass released them, bounded by the total number of constants
+  private final Map<String, ConstantPool> poolCache = new LinkedHashMap<>(16, 0.75f, true);
+  private int poolCacheWeight = 0;
+  private long poolCacheHits = 0;
+  private long poolCacheMisses = 0;
 
   public LazyLoader(IBytecodeProvider provider) {
     this.provider = provider;
@@ -22,10 +30,12 @@ public class LazyLoader {
 
   public void addClassLink(String className, Link link) {
     mapClassLinks.put(className, link);
+    evictPool(className);
   }
 
   public void removeClassLink(String className) {
     mapClassLinks.remove(className);
+    evictPool(className);
   }
 
   public Link getClassLink(String className) {
@@ -33,79 +43,71 @@ public class LazyLoader {
   }
 
   public ConstantPool loadPool(String className) {
-    try (DataInputFullStream in = getClassStream(className)) {
-      if (in != null) {
-        in.discard(8);
-        return new ConstantPool(in);
+    synchronized (poolCache) {
+      ConstantPool pool = poolCache.get(className);
+      if (pool != null) {
+        poolCacheHits++;
+        return pool;
       }
+      poolCacheMisses++;
+    }
 
-      return null;
+    ConstantPool pool;
+    try (DataInputFullStream in = getClassStream(className)) {
+      if (in == null) {
+        return null;
+      }
+      in.discard(8);
+      pool = new ConstantPool(in);
     }
     catch (IOException ex) {
       throw new RuntimeException(ex);
     }
-  }
 
-  public byte[] loadBytecode(StructClass classStruct, StructMethod mt, int codeFullLength) {
-    String className = classStruct.qualifiedName;
+    synchronized (poolCache) {
+      ConstantPool existing = poolCache.putIfAbsent(className, pool);
+      if (existing != null) {
+        return existing;
+      }
 
-    try (DataInputFullStream in = getClassStream(className)) {
-      if (in != null) {
-        in.discard(8);
-
-        ConstantPool pool = classStruct.getPool();
-        if (pool == null) {
-          pool = new ConstantPool(in);
-        }
-        else {
-          ConstantPool.skipPool(in);
-        }
-
-        in.discard(6);
-
-        // interfaces
-        in.discard(in.readUnsignedShort() * 2);
-
-        // fields
-        int size = in.readUnsignedShort();
-        for (int i = 0; i < size; i++) {
-          in.discard(6);
-          skipAttributes(in);
-        }
-
-        // methods
-        size = in.readUnsignedShort();
-        for (int i = 0; i < size; i++) {
-          in.discard(2);
-
-          int nameIndex = in.readUnsignedShort();
-          int descriptorIndex = in.readUnsignedShort();
-
-          String[] values = pool.getClassElement(ConstantPool.METHOD, className, nameIndex, descriptorIndex);
-          if (!mt.getName().equals(values[0]) || !mt.getDescriptor().equals(values[1])) {
-            skipAttributes(in);
-            continue;
-          }
-
-          int attrSize = in.readUnsignedShort();
-          for (int j = 0; j < attrSize; j++) {
-            int attrNameIndex = in.readUnsignedShort();
-            String attrName = pool.getPrimitiveConstant(attrNameIndex).getString();
-            if (!StructGeneralAttribute.ATTRIBUTE_CODE.name.equals(attrName)) {
-              in.discard(in.readInt());
-              continue;
-            }
-
-            in.discard(12);
-
-            return in.read(codeFullLength);
-          }
-
-          break;
-        }
+      poolCacheWeight += pool.size();
+      Iterator<ConstantPool> iterator = poolCache.values().iterator();
+      while (poolCacheWeight > MAX_CACHED_CONSTANTS && poolCache.size() > 1) {
+        poolCacheWeight -= iterator.next().size();
+        iterator.remove();
       }
+    }
+    return pool;
+  }
 
-      return null;
+  private void evictPool(String className) {
+    synchronized (poolCache) {
+      ConstantPool pool = poolCache.remove(className);
+      if (pool != null) {
+        poolCacheWeight -= pool.size();
+      }
+    }
+  }
+
+  public long getPoolCacheHits() {
+    synchronized (poolCache) {
+      return poolCacheHits;
+    }
+  }
+
+  public long getPoolCacheMisses() {
+    synchronized (poolCache) {
+      return poolCacheMisses;
+    }
+  }
+
+  public byte[] loadBytecode(StructClass classStruct, int codeOffset, int codeFullLength) {
+    if (classStruct.isCodeStripped()) { // the offsets point into the stripped class file, not into the original one
+      throw new IllegalStateException("Code of " + classStruct.qualifiedName + " was stripped by the library index");
+    }
+    try {
+      byte[] bytes = getClassBytes(classStruct.qualifiedName);
+      return bytes == null ? null : Arrays.copyOfRange(bytes, codeOffset, codeOffset + codeFullLength);
     }
     catch (IOException ex) {
       throw new RuntimeException(ex);
@@ -118,8 +120,13 @@ public class LazyLoader {
   }
 
   public DataInputFullStream getClassStream(String qualifiedClassName) throws IOException {
+    byte[] bytes = getClassBytes(qualifiedClassName);
+    return bytes == null ? null : new DataInputFullStream(bytes);
+  }
+
+  public byte[] getClassBytes(String qualifiedClassName) throws IOException {
     Link link = mapClassLinks.get(qualifiedClassName);
-    return link == null ? null : link.data != null ? new DataInputFullStream(link.data) : getClassStream(link.externalPath, link.internalPath);
+    return link == null ? null : link.data != null ? link.data : provider.getBytecode(link.externalPath, link.internalPath);
   }
 
   public static void skipAttributes(DataInputFullStream in) throws IOException {
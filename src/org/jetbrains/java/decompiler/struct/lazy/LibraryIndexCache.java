@@ -0,0 +1,281 @@
+package org.jetbrains.java.decompiler.struct.lazy;
+
+import org.jetbrains.java.decompiler.code.CodeConstants;
+import org.jetbrains.java.decompiler.struct.attr.StructGeneralAttribute;
+import org.jetbrains.java.decompiler.util.DataInputFullStream;
+import org.jetbrains.java.decompiler.util.ZipArchiveReader;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * On-disk index of library archives. For every archive it stores the entry layout and a copy of each class file with the
+ * bodies of its methods removed, which is all a library {@code StructClass} is built from. Index files are keyed by the
+ * archive path and validated against its size, its modification time and a checksum of its central directory, which is all
+ * that is read from the archive when a valid index is used.
+ */
+public class LibraryIndexCache {
+  private static final int MAGIC = 0x51464C49; // "QFLI"
+  private static final int FORMAT_VERSION = 3;
+
+  private final File directory;
+
+  public LibraryIndexCache(File directory) {
+    this.directory = directory;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @return the cached index of {@code archive}, or null if there is none or it is out of date
+   */
+  public Index load(File archive) throws IOException {
+    File indexFile = getIndexFile(archive);
+    if (!indexFile.isFile()) {
+      return null;
+    }
+
+    // read rather than mapped, a mapping would keep the file from being replaced on Windows until it is collected
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION ||
+          !archive.getAbsolutePath().equals(readString(buffer)) ||
+          buffer.getLong() != archive.length() || buffer.getLong() != archive.lastModified() ||
+          buffer.getLong() != ZipArchiveReader.getDirectoryChecksum(archive)) {
+        return null;
+      }
+
+      Index index = new Index();
+      readStrings(buffer, index.dirEntries);
+      readStrings(buffer, index.otherEntries);
+      int count = buffer.getInt();
+      for (int i = 0; i < count; i++) {
+        String entryName = readString(buffer);
+        String qualifiedName = readString(buffer);
+        int length = buffer.getInt();
+        ByteBuffer data = buffer.slice();
+        data.limit(length);
+        buffer.position(buffer.position() + length);
+        index.classes.add(new ClassEntry(entryName, qualifiedName, data));
+      }
+      return index;
+    }
+    catch (RuntimeException ex) { // truncated or foreign file, rebuild it
+      return null;
+    }
+  }
+
+  public void save(File archive, Index index) throws IOException {
+    if (!(directory.mkdirs() || directory.isDirectory())) {
+      throw new IOException("Cannot create directory " + directory);
+    }
+
+    File indexFile = getIndexFile(archive);
+    File tempFile = File.createTempFile(indexFile.getName(), ".tmp", directory);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeString(out, archive.getAbsolutePath());
+        out.writeLong(archive.length());
+        out.writeLong(archive.lastModified());
+        out.writeLong(ZipArchiveReader.getDirectoryChecksum(archive));
+        writeStrings(out, index.dirEntries);
+        writeStrings(out, index.otherEntries);
+        out.writeInt(index.classes.size());
+        for (ClassEntry entry : index.classes) {
+          writeString(out, entry.entryName);
+          writeString(out, entry.qualifiedName);
+          out.writeInt(entry.data.remaining());
+          out.write(entry.getBytes());
+        }
+      }
+      // concurrent runs may race on the same archive, whoever finishes last wins
+      Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+
+  private File getIndexFile(File archive) {
+    return new File(directory, toHex(digest(archive.getAbsolutePath().getBytes(StandardCharsets.UTF_8))) + ".idx");
+  }
+
+  /**
+   * Rewrites a class file so that every {@code Code} attribute keeps its nested attributes but no instructions or
+   * exception handlers. Everything else stays byte-identical, but the code offsets of the methods no longer match the
+   * original class file, so classes built from the result are created with {@code codeStripped} set.
+   */
+  public static byte[] stripCode(byte[] bytes) throws IOException {
+    DataInputFullStream in = new DataInputFullStream(bytes);
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length);
+    DataOutputStream out = new DataOutputStream(buffer);
+
+    in.discard(8);
+    BitSet codeNames = findUtf8(in, StructGeneralAttribute.ATTRIBUTE_CODE.name);
+
+    in.discard(6);
+    in.discard(in.readUnsignedShort() * 2); // interfaces
+    int fields = in.readUnsignedShort();
+    for (int i = 0; i < fields; i++) {
+      in.discard(6);
+      LazyLoader.skipAttributes(in);
+    }
+
+    int methodsStart = in.getOffset();
+    out.write(bytes, 0, methodsStart);
+
+    int methods = in.readUnsignedShort();
+    out.writeShort(methods);
+    for (int i = 0; i < methods; i++) {
+      out.write(in.read(6));
+      int attributes = in.readUnsignedShort();
+      out.writeShort(attributes);
+      for (int j = 0; j < attributes; j++) {
+        int nameIndex = in.readUnsignedShort();
+        int length = in.readInt();
+        out.writeShort(nameIndex);
+        if (!codeNames.get(nameIndex)) {
+          out.writeInt(length);
+          out.write(in.read(length));
+          continue;
+        }
+
+        int end = in.getOffset() + length;
+        byte[] limits = in.read(4); // max_stack, max_locals
+        in.discard(in.readInt());
+        in.discard(in.readUnsignedShort() * 8);
+        byte[] nested = in.read(end - in.getOffset());
+
+        out.writeInt(limits.length + 4 + 2 + nested.length);
+        out.write(limits);
+        out.writeInt(0);
+        out.writeShort(0);
+        out.write(nested);
+      }
+    }
+
+    out.write(bytes, in.getOffset(), bytes.length - in.getOffset());
+    return buffer.toByteArray();
+  }
+
+  private static BitSet findUtf8(DataInputFullStream in, String value) throws IOException {
+    BitSet found = new BitSet();
+    int size = in.readUnsignedShort();
+    for (int i = 1; i < size; i++) {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case CodeConstants.CONSTANT_Utf8:
+          if (value.equals(in.readUTF())) {
+            found.set(i);
+          }
+          break;
+        case CodeConstants.CONSTANT_Long:
+        case CodeConstants.CONSTANT_Double:
+          in.discard(8);
+          i++;
+          break;
+        case CodeConstants.CONSTANT_Class:
+        case CodeConstants.CONSTANT_String:
+        case CodeConstants.CONSTANT_MethodType:
+        case CodeConstants.CONSTANT_Module:
+        case CodeConstants.CONSTANT_Package:
+          in.discard(2);
+          break;
+        case CodeConstants.CONSTANT_MethodHandle:
+          in.discard(3);
+          break;
+        default:
+          in.discard(4);
+      }
+    }
+    return found;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void readStrings(ByteBuffer buffer, List<String> list) {
+    int count = buffer.getInt();
+    for (int i = 0; i < count; i++) {
+      list.add(readString(buffer));
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static void writeStrings(DataOutputStream out, List<String> list) throws IOException {
+    out.writeInt(list.size());
+    for (String value : list) {
+      writeString(out, value);
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    }
+    catch (NoSuchAlgorithmException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private static byte[] digest(byte[] bytes) {
+    return newDigest().digest(bytes);
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  public static class Index {
+    public final List<String> dirEntries = new ArrayList<>();
+    public final List<String> otherEntries = new ArrayList<>();
+    public final List<ClassEntry> classes = new ArrayList<>();
+  }
+
+  public static class ClassEntry {
+    public final String entryName;
+    public final String qualifiedName;
+    private final ByteBuffer data;
+
+    public ClassEntry(String entryName, String qualifiedName, byte[] data) {
+      this(entryName, qualifiedName, ByteBuffer.wrap(data));
+    }
+
+    private ClassEntry(String entryName, String qualifiedName, ByteBuffer data) {
+      this.entryName = entryName;
+      this.qualifiedName = qualifiedName;
+      this.data = data;
+    }
+
+    public byte[] getBytes() {
+      byte[] bytes = new byte[data.remaining()];
+      data.duplicate().get(bytes);
+      return bytes;
+    }
+  }
+}
@@ -6,8 +6,22 @@ import java.io.DataInputStream;
 import java.io.IOException;
 
 public class DataInputFullStream extends DataInputStream {
+  private final int end;
+
   public DataInputFullStream(byte[] bytes) {
-    super(new ByteArrayInputStream(bytes));
+    this(bytes, 0, bytes.length);
+  }
+
+  public DataInputFullStream(byte[] bytes, int offset, int length) {
+    super(new ByteArrayInputStream(bytes, offset, length));
+    this.end = offset + length;
+  }
+
+  /**
+   * @return position of the next byte to be read, relative to the start of the underlying array
+   */
+  public int getOffset() throws IOException {
+    return end - available();
   }
 
   public byte[] read(int n) throws IOException {
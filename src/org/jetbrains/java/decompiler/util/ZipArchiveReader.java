@@ -0,0 +1,256 @@
+package org.jetbrains.java.decompiler.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Reads archive entries exactly as they are stored, without inflating them, so they can be appended to a
+ * {@link ZipArchiveWriter} as is. The central directory is parsed once when the archive is opened.
+ */
+public final class ZipArchiveReader implements Closeable {
+  private static final int LOCAL_HEADER = 0x04034b50;
+  private static final int CENTRAL_HEADER = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+  private static final int ZIP64_LOCATOR = 0x07064b50;
+  private static final int FLAG_ENCRYPTED = 0x1;
+  private static final int FLAG_UTF8 = 0x800;
+  // names without the UTF-8 flag are meant to be CP437, but many tools write UTF-8 without setting it
+  private static final Charset LEGACY_CHARSET = Charset.isSupported("IBM437") ? Charset.forName("IBM437") : StandardCharsets.ISO_8859_1;
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  private static final int MAX_COMMENT = 0xFFFF;
+
+  private final File file;
+  private final FileChannel channel;
+  private final Map<String, Record> records = new HashMap<>();
+
+  public ZipArchiveReader(File file) throws IOException {
+    this.file = file;
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      readCentralDirectory();
+    }
+    catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @return the entry with its data as stored in the archive, or null if there is no such entry
+   */
+  public ZipArchiveWriter.Entry readRaw(String name) throws IOException {
+    Record record = records.get(name);
+    if (record == null) {
+      return null;
+    }
+    if ((record.flags & FLAG_ENCRYPTED) != 0) {
+      throw new ZipException("Encrypted entry " + name);
+    }
+    if (record.compressedSize > Integer.MAX_VALUE) {
+      throw new ZipException("Entry too large: " + name);
+    }
+
+    ByteBuffer header = read(record.offset, 30);
+    if (header.getInt(0) != LOCAL_HEADER) {
+      throw new ZipException("Invalid local header of " + name);
+    }
+    long start = record.offset + 30 + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+    byte[] data = read(start, (int)record.compressedSize).array();
+
+    return new ZipArchiveWriter.Entry(name, record.method, record.versionNeeded, record.dosTime, record.crc, record.size, data);
+  }
+
+  /**
+   * @return a CRC32 of the central directory of {@code file}, which changes with any entry of the archive
+   */
+  public static long getDirectoryChecksum(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      Directory directory = locateCentralDirectory(channel, file);
+      CRC32 crc = new CRC32();
+      crc.update(read(channel, file, directory.offset, (int)directory.size));
+      return crc.getValue();
+    }
+  }
+
+  private static Directory locateCentralDirectory(FileChannel channel, File file) throws IOException {
+    long length = channel.size();
+    int tailLength = (int)Math.min(length, 22 + MAX_COMMENT);
+    ByteBuffer tail = read(channel, file, length - tailLength, tailLength);
+
+    int end = -1;
+    for (int i = tailLength - 22; i >= 0; i--) {
+      if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+        end = i;
+        break;
+      }
+    }
+    if (end < 0) {
+      throw new ZipException("No end of central directory in " + file);
+    }
+
+    long count = tail.getShort(end + 10) & 0xFFFF;
+    long size = tail.getInt(end + 12) & ZIP64_MAGIC;
+    long offset = tail.getInt(end + 16) & ZIP64_MAGIC;
+    long endPosition = length - tailLength + end;
+
+    if ((count == 0xFFFF || size == ZIP64_MAGIC || offset == ZIP64_MAGIC) && end >= 20 && tail.getInt(end - 20) == ZIP64_LOCATOR) {
+      long zip64End = tail.getLong(end - 12);
+      ByteBuffer record = read(channel, file, zip64End, 56);
+      if (record.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+        throw new ZipException("Invalid zip64 end of central directory in " + file);
+      }
+      count = record.getLong(32);
+      size = record.getLong(40);
+      offset = record.getLong(48);
+      endPosition = zip64End;
+    }
+
+    // data prepended to the archive, e.g. a launcher script, shifts every offset
+    long shift = endPosition - size - offset;
+    if (size > Integer.MAX_VALUE || shift < 0) {
+      throw new ZipException("Invalid central directory in " + file);
+    }
+    return new Directory(count, offset + shift, size, shift);
+  }
+
+  private void readCentralDirectory() throws IOException {
+    Directory location = locateCentralDirectory(channel, file);
+    long count = location.count;
+    long shift = location.shift;
+
+    ByteBuffer directory = read(channel, file, location.offset, (int)location.size);
+    for (long i = 0; i < count; i++) {
+      int position = directory.position();
+      if (directory.getInt(position) != CENTRAL_HEADER) {
+        throw new ZipException("Invalid central directory entry in " + file);
+      }
+
+      Record record = new Record();
+      record.versionNeeded = directory.getShort(position + 6) & 0xFFFF;
+      record.flags = directory.getShort(position + 8) & 0xFFFF;
+      record.method = directory.getShort(position + 10) & 0xFFFF;
+      record.dosTime = directory.getInt(position + 12) & ZIP64_MAGIC;
+      record.crc = directory.getInt(position + 16) & ZIP64_MAGIC;
+      record.compressedSize = directory.getInt(position + 20) & ZIP64_MAGIC;
+      record.size = directory.getInt(position + 24) & ZIP64_MAGIC;
+      int nameLength = directory.getShort(position + 28) & 0xFFFF;
+      int extraLength = directory.getShort(position + 30) & 0xFFFF;
+      int commentLength = directory.getShort(position + 32) & 0xFFFF;
+      record.offset = directory.getInt(position + 42) & ZIP64_MAGIC;
+
+      byte[] name = new byte[nameLength];
+      directory.position(position + 46);
+      directory.get(name);
+      readZip64Extra(directory, position + 46 + nameLength, extraLength, record);
+      record.offset += shift;
+
+      records.put(decodeName(name, (record.flags & FLAG_UTF8) != 0), record);
+      directory.position(position + 46 + nameLength + extraLength + commentLength);
+    }
+  }
+
+  // without the flag, valid UTF-8 is still taken as UTF-8, so that names match those java.util.zip reports
+  private static String decodeName(byte[] name, boolean utf8) {
+    if (utf8) {
+      return new String(name, StandardCharsets.UTF_8);
+    }
+    try {
+      return StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT)
+        .decode(ByteBuffer.wrap(name))
+        .toString();
+    }
+    catch (CharacterCodingException ex) {
+      return new String(name, LEGACY_CHARSET);
+    }
+  }
+
+  private static void readZip64Extra(ByteBuffer directory, int start, int length, Record record) {
+    int position = start;
+    while (position + 4 <= start + length) {
+      int id = directory.getShort(position) & 0xFFFF;
+      int size = directory.getShort(position + 2) & 0xFFFF;
+      if (id == 0x0001) {
+        int field = position + 4;
+        if (record.size == ZIP64_MAGIC) {
+          record.size = directory.getLong(field);
+          field += 8;
+        }
+        if (record.compressedSize == ZIP64_MAGIC) {
+          record.compressedSize = directory.getLong(field);
+          field += 8;
+        }
+        if (record.offset == ZIP64_MAGIC) {
+          record.offset = directory.getLong(field);
+        }
+        return;
+      }
+      position += 4 + size;
+    }
+  }
+
+  private ByteBuffer read(long position, int length) throws IOException {
+    return read(channel, file, position, length);
+  }
+
+  private static ByteBuffer read(FileChannel channel, File file, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of " + file);
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private static final class Directory {
+    private final long count;
+    private final long offset; // already shifted
+    private final long size;
+    private final long shift;
+
+    private Directory(long count, long offset, long size, long shift) {
+      this.count = count;
+      this.offset = offset;
+      this.size = size;
+      this.shift = shift;
+    }
+  }
+
+  private static final class Record {
+    private int versionNeeded;
+    private int flags;
+    private int method;
+    private long dosTime;
+    private long crc;
+    private long compressedSize;
+    private long size;
+    private long offset;
+  }
+}
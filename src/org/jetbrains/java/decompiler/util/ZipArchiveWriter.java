@@ -0,0 +1,257 @@
+package org.jetbrains.java.decompiler.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Minimal zip writer for entries that are compressed up front. {@link #compress} is thread-safe and does all of the
+ * deflating, so that writing an entry is just appending its headers and data, and no lock has to be held while
+ * compressing.
+ */
+public final class ZipArchiveWriter implements Closeable {
+  private static final int LOCAL_HEADER = 0x04034b50;
+  private static final int CENTRAL_HEADER = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+  private static final int ZIP64_LOCATOR = 0x07064b50;
+  private static final int FLAG_UTF8 = 0x800;
+  private static final int JAR_MAGIC = 0xCAFE;
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  static final long NO_TIME = -1;
+
+  private final OutputStream out;
+  private final boolean jar;
+  private final int dosTime;
+  private final List<Record> records = new ArrayList<>();
+  private long offset;
+
+  /**
+   * @param manifest if not null, written as the first entry, like {@link java.util.jar.JarOutputStream} does
+   */
+  public ZipArchiveWriter(OutputStream out, Manifest manifest) throws IOException {
+    this.out = new BufferedOutputStream(out, 1 << 16);
+    this.jar = manifest != null;
+    this.dosTime = toDosTime(LocalDateTime.now());
+
+    if (manifest != null) {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      manifest.write(buffer);
+      write(compress(JarFile.MANIFEST_NAME, buffer.toByteArray()));
+    }
+  }
+
+  /**
+   * Deflates {@code data} into an entry ready to be written, empty entries such as directories are stored as is. The
+   * entry gets the time the archive was created.
+   */
+  public static Entry compress(String name, byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length);
+
+    if (data.length == 0) {
+      return new Entry(name, ZipEntry.STORED, name.endsWith("/") ? 20 : 10, NO_TIME, crc.getValue(), 0, data);
+    }
+
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(data.length / 4, 64));
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        compressed.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return new Entry(name, ZipEntry.DEFLATED, 20, NO_TIME, crc.getValue(), data.length, compressed.toByteArray());
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  public void write(Entry entry) throws IOException {
+    if (entry.size >= ZIP64_MAGIC) {
+      throw new ZipException("Entry too large: " + entry.name);
+    }
+
+    byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+    byte[] extra = jar && records.isEmpty() ? new byte[]{(byte)JAR_MAGIC, (byte)(JAR_MAGIC >> 8), 0, 0} : new byte[0];
+    Record record = new Record(entry, name, extra, entry.dosTime != NO_TIME ? (int)entry.dosTime : dosTime, offset);
+
+    writeInt(LOCAL_HEADER);
+    writeShort(entry.versionNeeded);
+    writeShort(FLAG_UTF8);
+    writeShort(entry.method);
+    writeInt(record.dosTime);
+    writeInt((int)entry.crc);
+    writeInt(entry.data.length);
+    writeInt((int)entry.size);
+    writeShort(name.length);
+    writeShort(extra.length);
+    writeBytes(name);
+    writeBytes(extra);
+    writeBytes(entry.data);
+
+    records.add(record);
+  }
+
+  /**
+   * Writes the central directory and closes the underlying stream.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      long start = offset;
+      for (Record record : records) {
+        boolean zip64 = record.offset >= ZIP64_MAGIC;
+        int extraLength = record.extra.length + (zip64 ? 12 : 0);
+        int versionNeeded = zip64 ? Math.max(record.versionNeeded, 45) : record.versionNeeded;
+
+        writeInt(CENTRAL_HEADER);
+        writeShort(Math.max(versionNeeded, 20)); // version made by, MS-DOS
+        writeShort(versionNeeded);
+        writeShort(FLAG_UTF8);
+        writeShort(record.method);
+        writeInt(record.dosTime);
+        writeInt((int)record.crc);
+        writeInt((int)record.compressedSize);
+        writeInt((int)record.size);
+        writeShort(record.name.length);
+        writeShort(extraLength);
+        writeShort(0); // comment
+        writeShort(0); // disk number
+        writeShort(0); // internal attributes
+        writeInt(0); // external attributes
+        writeInt(zip64 ? (int)ZIP64_MAGIC : (int)record.offset);
+        writeBytes(record.name);
+        writeBytes(record.extra);
+        if (zip64) {
+          writeShort(0x0001);
+          writeShort(8);
+          writeLong(record.offset);
+        }
+      }
+      long size = offset - start;
+
+      if (records.size() >= 0xFFFF || start >= ZIP64_MAGIC || size >= ZIP64_MAGIC) {
+        long end = offset;
+        writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY);
+        writeLong(44);
+        writeShort(45);
+        writeShort(45);
+        writeInt(0);
+        writeInt(0);
+        writeLong(records.size());
+        writeLong(records.size());
+        writeLong(size);
+        writeLong(start);
+
+        writeInt(ZIP64_LOCATOR);
+        writeInt(0);
+        writeLong(end);
+        writeInt(1);
+      }
+
+      writeInt(END_OF_CENTRAL_DIRECTORY);
+      writeShort(0);
+      writeShort(0);
+      writeShort(Math.min(records.size(), 0xFFFF));
+      writeShort(Math.min(records.size(), 0xFFFF));
+      writeInt((int)Math.min(size, ZIP64_MAGIC));
+      writeInt((int)Math.min(start, ZIP64_MAGIC));
+      writeShort(0);
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  private static int toDosTime(LocalDateTime time) {
+    if (time.getYear() < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16 |
+           time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+  }
+
+  private void writeShort(int value) throws IOException {
+    out.write(value);
+    out.write(value >> 8);
+    offset += 2;
+  }
+
+  private void writeInt(int value) throws IOException {
+    writeShort(value);
+    writeShort(value >>> 16);
+  }
+
+  private void writeLong(long value) throws IOException {
+    writeInt((int)value);
+    writeInt((int)(value >>> 32));
+  }
+
+  private void writeBytes(byte[] bytes) throws IOException {
+    out.write(bytes);
+    offset += bytes.length;
+  }
+
+  /**
+   * A compressed entry, not yet part of any archive.
+   */
+  public static final class Entry {
+    private final String name;
+    private final int method;
+    private final int versionNeeded;
+    private final long dosTime; // NO_TIME for the time the archive was created
+    private final long crc;
+    private final long size;
+    private final byte[] data;
+
+    Entry(String name, int method, int versionNeeded, long dosTime, long crc, long size, byte[] data) {
+      this.name = name;
+      this.method = method;
+      this.versionNeeded = versionNeeded;
+      this.dosTime = dosTime;
+      this.crc = crc;
+      this.size = size;
+      this.data = data;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
+  // central directory record of a written entry, without its data
+  private static final class Record {
+    private final byte[] name;
+    private final byte[] extra;
+    private final int method;
+    private final int versionNeeded;
+    private final int dosTime;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final long offset;
+
+    private Record(Entry entry, byte[] name, byte[] extra, int dosTime, long offset) {
+      this.name = name;
+      this.extra = extra;
+      this.method = entry.method;
+      this.versionNeeded = entry.versionNeeded;
+      this.dosTime = dosTime;
+      this.crc = entry.crc;
+      this.compressedSize = entry.data.length;
+      this.size = entry.size;
+      this.offset = offset;
+    }
+  }
+}
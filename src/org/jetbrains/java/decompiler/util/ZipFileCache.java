@@ -0,0 +1,130 @@
+package org.jetbrains.java.decompiler.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+/**
+ * Bounded, thread-safe pool of open archives. Handles are reference counted: only archives nobody is reading from are
+ * closed when the pool grows past its limit, the rest are closed once their last user releases them.
+ */
+public final class ZipFileCache implements AutoCloseable {
+  public static final int DEFAULT_MAX_OPEN = 64;
+
+  private final int maxOpen;
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // access order, eldest first
+
+  public ZipFileCache() {
+    this(DEFAULT_MAX_OPEN);
+  }
+
+  public ZipFileCache(int maxOpen) {
+    if (maxOpen < 1) {
+      throw new IllegalArgumentException("maxOpen: " + maxOpen);
+    }
+    this.maxOpen = maxOpen;
+  }
+
+  /**
+   * @return a handle of its own for every call, the archive stays open at least until the handle is closed
+   */
+  public synchronized Handle acquire(File file) throws IOException {
+    String key = file.getAbsolutePath();
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      entry = new Entry(key, new ZipFile(file));
+      entry.refCount++; // before trimming, so that the new entry is never the one closed
+      entries.put(key, entry);
+      trim();
+    }
+    else {
+      entry.refCount++;
+    }
+    return new Handle(entry);
+  }
+
+  private synchronized void release(Handle handle) {
+    if (handle.closed) {
+      return;
+    }
+    handle.closed = true;
+
+    Entry entry = handle.entry;
+    if (--entry.refCount == 0 && entries.get(entry.key) != entry) {
+      entry.closeArchive();
+    }
+  }
+
+  private void trim() {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (entries.size() > maxOpen && iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.refCount == 0) {
+        iterator.remove();
+        entry.closeArchive();
+      }
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Closes every idle archive and detaches the ones still in use, which are closed as soon as they are released.
+   * The pool itself stays usable and will reopen archives on demand.
+   */
+  @Override
+  public synchronized void close() {
+    for (Entry entry : entries.values()) {
+      if (entry.refCount == 0) {
+        entry.closeArchive();
+      }
+    }
+    entries.clear();
+  }
+
+  private static final class Entry {
+    private final String key;
+    private final ZipFile archive;
+    private int refCount;
+
+    private Entry(String key, ZipFile archive) {
+      this.key = key;
+      this.archive = archive;
+    }
+
+    private void closeArchive() {
+      try {
+        archive.close();
+      }
+      catch (IOException ignored) {
+        // read-only handle, nothing was lost
+      }
+    }
+  }
+
+  /**
+   * One user's reference to an open archive. Closing it more than once has no further effect.
+   */
+  public final class Handle implements AutoCloseable {
+    private final Entry entry;
+    private boolean closed; // guarded by the cache
+
+    private Handle(Entry entry) {
+      this.entry = entry;
+    }
+
+    public ZipFile getArchive() {
+      return entry.archive;
+    }
+
+    @Override
+    public void close() {
+      release(this);
+    }
+  }
+}
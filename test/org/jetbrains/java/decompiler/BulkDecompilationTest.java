@@ -2,17 +2,24 @@
 package org.jetbrains.java.decompiler;
 
 import org.jetbrains.java.decompiler.main.decompiler.ConsoleDecompiler;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import static org.jetbrains.java.decompiler.DecompilerTestFixture.assertFilesEqual;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class BulkDecompilationTest {
@@ -58,6 +65,25 @@ public class BulkDecompilationTest {
 //    doTestJar("obfuscated");
 //  }
 
+  @Test
+  public void testOverriddenSaveClassEntryIsCalled() {
+    File targetDir = new File(fixture.getTempDir(), "custom");
+    assertTrue(targetDir.mkdirs());
+    List<String> saved = new ArrayList<>();
+    ConsoleDecompiler decompiler = new ConsoleDecompiler(targetDir, Collections.emptyMap(), new PrintStreamLogger(System.out)) {
+      @Override
+      public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
+        if (content != null) { // directory entries are saved through here too
+          saved.add(entryName);
+        }
+      }
+    };
+    decompiler.addSource(new File(fixture.getTestDataDir(), "bulk.jar"));
+    decompiler.decompileContext();
+
+    assertEquals(Arrays.asList("pkg/Main.java", "pkg/res/Loader.java"), saved.stream().sorted().collect(Collectors.toList()));
+  }
+
   private void doTestJar(String name) {
     ConsoleDecompiler decompiler = fixture.getDecompiler();
     String jarName = name + ".jar";
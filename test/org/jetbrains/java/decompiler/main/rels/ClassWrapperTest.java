@@ -0,0 +1,39 @@
+package org.jetbrains.java.decompiler.main.rels;
+
+import org.jetbrains.java.decompiler.DecompilerTestFixture;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.jetbrains.java.decompiler.DecompilerTestFixture.assertFilesEqual;
+
+public class ClassWrapperTest {
+  private DecompilerTestFixture serial;
+  private DecompilerTestFixture parallel;
+
+  @After
+  public void tearDown() {
+    if (serial != null) serial.tearDown();
+    if (parallel != null) parallel.tearDown();
+  }
+
+  // methods of every class are decompiled in parallel, which must not change the output
+  @Test
+  public void testParallelMethodsMatchSerial() throws IOException {
+    serial = decompile(IFernflowerPreferences.THREADS, "1");
+    parallel = decompile(IFernflowerPreferences.THREADS, "4", IFernflowerPreferences.PARALLEL_METHODS_CODE_LENGTH, "0");
+
+    assertFilesEqual(serial.getTargetDir(), parallel.getTargetDir());
+  }
+
+  private static DecompilerTestFixture decompile(String... optionPairs) throws IOException {
+    DecompilerTestFixture fixture = new DecompilerTestFixture();
+    fixture.setUp(optionPairs);
+    fixture.getDecompiler().addSource(new File(fixture.getTestDataDir(), "classes/pkg"));
+    fixture.getDecompiler().decompileContext();
+    return fixture;
+  }
+}
@@ -0,0 +1,74 @@
+package org.jetbrains.java.decompiler.modules.decompiler.deobfuscator;
+
+import org.jetbrains.java.decompiler.main.decompiler.ConsoleDecompiler;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IrreducibleCFGDeobfuscatorTest {
+  private static final String FAILED_INITIALIZER = "static {\n      // $FF: Couldn't be decompiled";
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  // the static initializer of a3 copies 1693 instructions to become reducible
+  @Test
+  public void testSplittingWithinBudget() throws IOException {
+    List<String> messages = new ArrayList<>();
+    String content = decompile("a3", "64", messages);
+
+    assertThat(messages).noneMatch(message -> message.contains("budget"));
+    assertThat(content).contains("static {").doesNotContain(FAILED_INITIALIZER);
+  }
+
+  @Test
+  public void testSplittingStopsAtBudget() throws IOException {
+    List<String> messages = new ArrayList<>();
+    String content = decompile("a3", "1", messages);
+
+    assertThat(messages).contains("Node splitting budget of 1024 instructions exceeded, see option " + IFernflowerPreferences.MAX_SPLIT_FACTOR);
+    assertThat(content).contains(FAILED_INITIALIZER);
+  }
+
+  private String decompile(String className, String maxSplitFactor, List<String> messages) throws IOException {
+    File source = new File(temp.newFolder("classes"), className + ".class");
+    try (ZipFile archive = new ZipFile("testData/obfuscated.jar")) {
+      Files.write(source.toPath(), InterpreterUtil.getBytes(archive, archive.getEntry(className + ".class")));
+    }
+    File target = temp.newFolder("target");
+
+    Map<String, Object> options = new HashMap<>();
+    options.put(IFernflowerPreferences.MAX_SPLIT_FACTOR, maxSplitFactor);
+    options.put(IFernflowerPreferences.LOG_LEVEL, "warn");
+    options.put(IFernflowerPreferences.NEW_LINE_SEPARATOR, "1");
+    ConsoleDecompiler decompiler = new ConsoleDecompiler(target, options, new IFernflowerLogger() {
+      @Override
+      public void writeMessage(String message, Severity severity) {
+        messages.add(message);
+      }
+
+      @Override
+      public void writeMessage(String message, Severity severity, Throwable t) {
+        messages.add(message);
+      }
+    }) { };
+    decompiler.addSource(source);
+    decompiler.decompileContext();
+
+    return new String(Files.readAllBytes(new File(target, className + ".java").toPath()), StandardCharsets.UTF_8);
+  }
+}
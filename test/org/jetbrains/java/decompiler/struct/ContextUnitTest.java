@@ -0,0 +1,132 @@
+package org.jetbrains.java.decompiler.struct;
+
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.main.decompiler.SingleFileSaver;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.main.extern.IResultSaver;
+import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContextUnitTest {
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testSaverIsCalledFromOneThread() {
+    RecordingSaver saver = new RecordingSaver();
+    Map<String, Object> options = new HashMap<>();
+    options.put(IFernflowerPreferences.LOG_LEVEL, "error");
+    options.put(IFernflowerPreferences.THREADS, "4");
+    Fernflower fernflower = new Fernflower(ContextUnitTest::readEntry, saver, options, new PrintStreamLogger(System.out));
+    try {
+      fernflower.addSource(new File("testData/bulk.jar"));
+      fernflower.decompileContext();
+    }
+    finally {
+      fernflower.clearContext();
+    }
+
+    assertThat(saver.threads).hasSize(1).doesNotContain(Thread.currentThread());
+    assertThat(saver.calls.get(0)).isEqualTo("createArchive");
+    assertThat(saver.calls.get(saver.calls.size() - 1)).isEqualTo("closeArchive");
+    assertThat(saver.calls).contains("saveClassEntry pkg/Main.java", "saveClassEntry pkg/res/Loader.java");
+  }
+
+  @Test
+  public void testSingleFileSaverWritesArchivesOneAfterAnother() throws IOException {
+    File target = temp.newFile("out.jar");
+    Map<String, Object> options = new HashMap<>();
+    options.put(IFernflowerPreferences.LOG_LEVEL, "error");
+    options.put(IFernflowerPreferences.THREADS, "4");
+    Fernflower fernflower = new Fernflower(ContextUnitTest::readEntry, new SingleFileSaver(target), options, new PrintStreamLogger(System.out));
+    try {
+      for (String name : new String[]{"first.jar", "second.jar"}) {
+        File source = new File(temp.getRoot(), name);
+        Files.copy(new File("testData/bulk.jar").toPath(), source.toPath());
+        fernflower.addSource(source);
+      }
+      fernflower.decompileContext();
+    }
+    finally {
+      fernflower.clearContext();
+    }
+
+    try (ZipFile archive = new ZipFile(target)) {
+      assertThat(archive.getEntry("pkg/Main.java")).isNotNull();
+      assertThat(archive.getEntry("pkg/res/Loader.java")).isNotNull();
+    }
+  }
+
+  private static byte[] readEntry(String externalPath, String internalPath) throws IOException {
+    try (ZipFile archive = new ZipFile(externalPath)) {
+      return InterpreterUtil.getBytes(archive, archive.getEntry(internalPath));
+    }
+  }
+
+  private static class RecordingSaver implements IResultSaver {
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+    private void record(String call) {
+      threads.add(Thread.currentThread());
+      calls.add(call);
+    }
+
+    @Override
+    public void saveFolder(String path) {
+      threads.add(Thread.currentThread());
+    }
+
+    @Override
+    public void copyFile(String source, String path, String entryName) {
+      record("copyFile " + entryName);
+    }
+
+    @Override
+    public void saveClassFile(String path, String qualifiedName, String entryName, String content, int[] mapping) {
+      record("saveClassFile " + entryName);
+    }
+
+    @Override
+    public void createArchive(String path, String archiveName, Manifest manifest) {
+      record("createArchive");
+    }
+
+    @Override
+    public void saveDirEntry(String path, String archiveName, String entryName) {
+      record("saveDirEntry " + entryName);
+    }
+
+    @Override
+    public void copyEntry(String source, String path, String archiveName, String entry) {
+      record("copyEntry " + entry);
+    }
+
+    @Override
+    public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
+      record("saveClassEntry " + entryName);
+    }
+
+    @Override
+    public void closeArchive(String path, String archiveName) {
+      record("closeArchive");
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package org.jetbrains.java.decompiler.struct;
+
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.struct.lazy.LazyLoader;
+import org.jetbrains.java.decompiler.util.DataInputFullStream;
+import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DecompiledClassCacheTest {
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  private Fernflower fernflower;
+  private LazyLoader loader;
+  private byte[] bytes;
+  private ClassNode node;
+
+  @Before
+  public void setUp() throws IOException {
+    fernflower = new Fernflower(null, null, Collections.singletonMap(IFernflowerPreferences.LOG_LEVEL, "error"), new PrintStreamLogger(System.out));
+    try (ZipFile archive = new ZipFile("testData/bulk.jar")) {
+      bytes = InterpreterUtil.getBytes(archive, archive.getEntry("pkg/Main.class"));
+    }
+    loader = new LazyLoader(null);
+    loader.addClassLink("pkg/Main", new LazyLoader.Link("bulk.jar", "pkg/Main.class", bytes));
+    node = new ClassNode(ClassNode.CLASS_ROOT, StructClass.create(new DataInputFullStream(bytes), true, loader));
+  }
+
+  @After
+  public void tearDown() {
+    fernflower.clearContext();
+  }
+
+  @Test
+  public void testKeyDependsOnOptions() throws IOException {
+    Map<String, Object> options = new HashMap<>();
+    options.put(IFernflowerPreferences.DECOMPILE_GENERIC_SIGNATURES, "1");
+    String key = newCache("1.0", options).getKey(node);
+    assertThat(newCache("1.0", options).getKey(node)).isEqualTo(key);
+
+    options.put(IFernflowerPreferences.THREADS, "8"); // does not affect the output
+    assertThat(newCache("1.0", options).getKey(node)).isEqualTo(key);
+
+    options.put(IFernflowerPreferences.DECOMPILE_GENERIC_SIGNATURES, "0");
+    assertThat(newCache("1.0", options).getKey(node)).isNotEqualTo(key);
+  }
+
+  @Test
+  public void testKeyDependsOnVersionAndClassBytes() throws IOException {
+    String key = newCache("1.0", Collections.emptyMap()).getKey(node);
+    assertThat(newCache("1.1", Collections.emptyMap()).getKey(node)).isNotEqualTo(key);
+
+    byte[] changed = Arrays.copyOf(bytes, bytes.length);
+    changed[changed.length - 1] ^= 1;
+    loader.addClassLink("pkg/Main", new LazyLoader.Link("bulk.jar", "pkg/Main.class", changed));
+    assertThat(newCache("1.0", Collections.emptyMap()).getKey(node)).isNotEqualTo(key);
+  }
+
+  @Test
+  public void testStoreAndLoad() throws IOException {
+    DecompiledClassCache cache = newCache("1.0", Collections.emptyMap());
+    String key = cache.getKey(node);
+    assertThat(cache.load(key)).isNull();
+
+    cache.save(key, "class Main {\n}\n", new int[]{1, 2, 3, 4});
+    DecompiledClassCache.CachedClass cached = cache.load(key);
+    assertThat(cached).isNotNull();
+    assertThat(cached.content).isEqualTo("class Main {\n}\n");
+    assertThat(cached.mapping).containsExactly(1, 2, 3, 4);
+
+    cache.save(key, "class Main {}", null);
+    cached = newCache("1.0", Collections.emptyMap()).load(key);
+    assertThat(cached.content).isEqualTo("class Main {}");
+    assertThat(cached.mapping).isNull();
+  }
+
+  @Test
+  public void testLocalBuildsAreToldApartByTheirJar() throws IOException {
+    assertThat(DecompiledClassCache.getDecompilerVersion("1.5.0", null)).isEqualTo("1.5.0");
+    assertThat(DecompiledClassCache.getDecompilerVersion("1.5.0+local", null)).isNull();
+    assertThat(DecompiledClassCache.getDecompilerVersion("1.5.0+local", temp.newFolder("classes"))).isNull();
+
+    File jar = temp.newFile("decompiler.jar");
+    Files.write(jar.toPath(), new byte[]{1, 2, 3});
+    String version = DecompiledClassCache.getDecompilerVersion("1.5.0+local", jar);
+    assertThat(version).startsWith("1.5.0+local-");
+    assertThat(DecompiledClassCache.getDecompilerVersion(null, jar)).isNotNull();
+
+    Files.write(jar.toPath(), new byte[]{1, 2, 4});
+    assertThat(DecompiledClassCache.getDecompilerVersion("1.5.0+local", jar)).isNotEqualTo(version);
+  }
+
+  @Test
+  public void testKeyDependsOnClasspath() throws IOException {
+    File library = temp.newFile("library.jar");
+    Files.copy(new File("testData/bulk.jar").toPath(), library.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    List<String> classNames = Collections.singletonList("pkg/Main");
+    String key = newCache(classNames, Collections.singletonList(library)).getKey(node);
+    assertThat(newCache(classNames, Collections.singletonList(library)).getKey(node)).isEqualTo(key);
+
+    assertThat(newCache(Arrays.asList("pkg/Main", "pkg/List"), Collections.singletonList(library)).getKey(node)).isNotEqualTo(key);
+    assertThat(newCache(classNames, Collections.emptyList()).getKey(node)).isNotEqualTo(key);
+
+    long lastModified = library.lastModified();
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(library))) {
+      out.putNextEntry(new ZipEntry("pkg/Main.class"));
+      out.write(bytes);
+    }
+    assertThat(library.setLastModified(lastModified)).isTrue();
+    assertThat(newCache(classNames, Collections.singletonList(library)).getKey(node)).isNotEqualTo(key);
+  }
+
+  private DecompiledClassCache newCache(String version, Map<String, Object> options) throws IOException {
+    return new DecompiledClassCache(new File(temp.getRoot(), "cache"), version, options, Collections.emptyList(), Collections.emptyList());
+  }
+
+  private DecompiledClassCache newCache(List<String> classNames, List<File> libraries) throws IOException {
+    return new DecompiledClassCache(new File(temp.getRoot(), "cache"), "1.0", Collections.emptyMap(), classNames, libraries);
+  }
+}
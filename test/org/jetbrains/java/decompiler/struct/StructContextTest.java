@@ -0,0 +1,108 @@
+package org.jetbrains.java.decompiler.struct;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StructContextTest {
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  private final List<String> requested = new ArrayList<>();
+  private Fernflower fernflower;
+
+  @Before
+  public void setUp() {
+    fernflower = new Fernflower((externalPath, internalPath) -> {
+      requested.add(externalPath);
+      try (ZipFile archive = new ZipFile(externalPath)) {
+        return InterpreterUtil.getBytes(archive, archive.getEntry(internalPath));
+      }
+    }, null, Collections.singletonMap(IFernflowerPreferences.LOG_LEVEL, "error"), new PrintStreamLogger(System.out));
+  }
+
+  @After
+  public void tearDown() {
+    fernflower.clearContext();
+  }
+
+  @Test
+  public void testLibraryClassIsParsedOnce() throws IOException {
+    fernflower.addLibrary(copyLibrary("first.jar"));
+
+    StructContext context = DecompilerContext.getStructContext();
+    StructClass cl = context.getClass("pkg/Main");
+    assertThat(cl).isNotNull();
+    assertThat(context.getClass("pkg/Main")).isSameAs(cl);
+    assertThat(requested).hasSize(1);
+  }
+
+  @Test
+  public void testLaterLibraryClassWins() throws IOException {
+    File first = new File(temp.getRoot(), "Main.class");
+    try (ZipFile archive = new ZipFile("testData/bulk.jar")) {
+      Files.write(first.toPath(), InterpreterUtil.getBytes(archive, archive.getEntry("pkg/Main.class")));
+    }
+    fernflower.addLibrary(first); // a single class file is parsed up front
+    File second = copyLibrary("second.jar");
+    fernflower.addLibrary(second);
+
+    assertThat(DecompilerContext.getStructContext().getClass("pkg/Main")).isNotNull();
+    assertThat(requested).containsExactly(second.getAbsolutePath());
+  }
+
+  @Test
+  public void testClassBelowClasspathRootOfArchiveIsFound() throws IOException {
+    File library = new File(temp.getRoot(), "boot.jar");
+    try (ZipFile archive = new ZipFile("testData/bulk.jar");
+         ZipOutputStream out = new ZipOutputStream(new FileOutputStream(library))) {
+      out.putNextEntry(new ZipEntry("BOOT-INF/classes/pkg/Main.class"));
+      out.write(InterpreterUtil.getBytes(archive, archive.getEntry("pkg/Main.class")));
+    }
+    fernflower.addLibrary(library);
+
+    StructContext context = DecompilerContext.getStructContext();
+    assertThat(context.getClass("pkg/Main")).isNotNull();
+    assertThat(context.getClass("BOOT-INF/classes/pkg/Main")).isNull();
+  }
+
+  @Test
+  public void testClassBelowClasspathRootOfFolderIsFound() throws IOException {
+    File root = temp.newFolder("lib");
+    File classFile = new File(root, "classes/pkg/Main.class");
+    assertThat(classFile.getParentFile().mkdirs()).isTrue();
+    try (ZipFile archive = new ZipFile("testData/bulk.jar")) {
+      Files.write(classFile.toPath(), InterpreterUtil.getBytes(archive, archive.getEntry("pkg/Main.class")));
+    }
+    fernflower.addLibrary(root);
+
+    StructContext context = DecompilerContext.getStructContext();
+    assertThat(context.getClass("pkg/Main")).isNotNull();
+    assertThat(context.getClass("classes/pkg/Main")).isNull();
+  }
+
+  private File copyLibrary(String name) throws IOException {
+    File file = new File(temp.getRoot(), name);
+    Files.copy(new File("testData/bulk.jar").toPath(), file.toPath());
+    return file;
+  }
+}
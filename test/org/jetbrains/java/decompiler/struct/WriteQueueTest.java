@@ -0,0 +1,118 @@
+package org.jetbrains.java.decompiler.struct;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WriteQueueTest {
+  private Fernflower fernflower;
+  private DecompilerContext context;
+
+  @Before
+  public void setUp() {
+    fernflower = new Fernflower(null, null, Collections.singletonMap(IFernflowerPreferences.LOG_LEVEL, "error"), new PrintStreamLogger(System.out));
+    context = DecompilerContext.getCurrentContext();
+  }
+
+  @After
+  public void tearDown() {
+    fernflower.clearContext();
+  }
+
+  @Test
+  public void testSubmitBlocksWhileQueueIsFull() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    try (WriteQueue queue = new WriteQueue(2, context)) {
+      queue.submit(() -> {
+        started.countDown();
+        await(release);
+      });
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+      // the writer is busy, so two more writes fill the queue and the third one has to wait
+      queue.submit(() -> { });
+      queue.submit(() -> { });
+      CompletableFuture<Void> submitted = CompletableFuture.runAsync(() -> queue.submit(() -> { }));
+      Thread.sleep(200);
+      assertThat(submitted).isNotDone();
+
+      release.countDown();
+      submitted.get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testFailedWriteCompletesFutureExceptionally() throws Exception {
+    IllegalStateException failure = new IllegalStateException("disk full");
+    try (WriteQueue queue = new WriteQueue(4, context)) {
+      CompletableFuture<Void> failed = queue.submit(() -> { throw failure; });
+      CompletableFuture<Void> next = queue.submit(() -> { });
+
+      assertThatThrownBy(() -> failed.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class).hasCause(failure);
+      next.get(10, TimeUnit.SECONDS); // the writer keeps going
+    }
+  }
+
+  @Test
+  public void testCloseWaitsForQueuedWrites() {
+    List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+    try (WriteQueue queue = new WriteQueue(16, context)) {
+      for (int i = 0; i < 10; i++) {
+        int index = i;
+        futures.add(queue.submit(() -> {
+          sleep(10);
+          written.add(index);
+        }));
+      }
+    }
+
+    assertThat(written).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    assertThat(futures).allMatch(future -> future.isDone() && !future.isCompletedExceptionally());
+  }
+
+  @Test
+  public void testSubmitOnWriterThreadRunsRightAway() throws Exception {
+    try (WriteQueue queue = new WriteQueue(1, context)) {
+      CompletableFuture<Void> nested = new CompletableFuture<>();
+      queue.submit(() -> queue.submit(() -> { }).whenComplete((result, error) -> nested.complete(null)));
+      nested.get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    }
+    catch (InterruptedException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    }
+    catch (InterruptedException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package org.jetbrains.java.decompiler.struct.lazy;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.jetbrains.java.decompiler.struct.StructMethod;
+import org.jetbrains.java.decompiler.util.DataInputFullStream;
+import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LibraryIndexCacheTest {
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testIndexHit() throws IOException {
+    File archive = createArchive("lib.jar", "pkg/A.class");
+    LibraryIndexCache cache = new LibraryIndexCache(temp.newFolder("index"));
+
+    LibraryIndexCache.Index index = new LibraryIndexCache.Index();
+    index.dirEntries.add("pkg/");
+    index.otherEntries.add("pkg/resource.txt");
+    index.classes.add(new LibraryIndexCache.ClassEntry("pkg/A.class", "pkg/A", new byte[]{1, 2, 3}));
+    cache.save(archive, index);
+
+    LibraryIndexCache.Index loaded = cache.load(archive);
+    assertThat(loaded).isNotNull();
+    assertThat(loaded.dirEntries).containsExactly("pkg/");
+    assertThat(loaded.otherEntries).containsExactly("pkg/resource.txt");
+    assertThat(loaded.classes).hasSize(1);
+    assertThat(loaded.classes.get(0).entryName).isEqualTo("pkg/A.class");
+    assertThat(loaded.classes.get(0).qualifiedName).isEqualTo("pkg/A");
+    assertThat(loaded.classes.get(0).getBytes()).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  public void testIndexMiss() throws IOException {
+    File archive = createArchive("lib.jar", "pkg/A.class");
+    File other = createArchive("other.jar", "pkg/A.class");
+    LibraryIndexCache cache = new LibraryIndexCache(temp.newFolder("index"));
+
+    assertThat(cache.load(archive)).isNull();
+
+    cache.save(archive, new LibraryIndexCache.Index());
+    assertThat(cache.load(other)).isNull();
+  }
+
+  @Test
+  public void testIndexInvalidatedByChangedArchive() throws IOException {
+    File archive = createArchive("lib.jar", "pkg/A.class");
+    LibraryIndexCache cache = new LibraryIndexCache(temp.newFolder("index"));
+    cache.save(archive, new LibraryIndexCache.Index());
+    assertThat(cache.load(archive)).isNotNull();
+
+    long modified = archive.lastModified();
+    assertThat(archive.setLastModified(modified + 10000)).isTrue();
+    assertThat(cache.load(archive)).isNull();
+
+    cache.save(archive, new LibraryIndexCache.Index());
+    writeArchive(archive, "pkg/A.class", "pkg/B.class");
+    assertThat(archive.setLastModified(modified + 10000)).isTrue();
+    assertThat(cache.load(archive)).isNull();
+  }
+
+  @Test
+  public void testIndexInvalidatedByContentWithSameSizeAndTime() throws IOException {
+    File archive = createArchive("lib.jar", "pkg/A.class");
+    LibraryIndexCache cache = new LibraryIndexCache(temp.newFolder("index"));
+    cache.save(archive, new LibraryIndexCache.Index());
+
+    long length = archive.length();
+    long modified = archive.lastModified();
+    writeArchive(archive, "pkg/B.class");
+    assertThat(archive.setLastModified(modified)).isTrue();
+    assertThat(archive.length()).isEqualTo(length);
+    assertThat(cache.load(archive)).isNull();
+  }
+
+  @Test
+  public void testIndexInvalidatedByCorruptFile() throws IOException {
+    File archive = createArchive("lib.jar", "pkg/A.class");
+    File directory = temp.newFolder("index");
+    LibraryIndexCache cache = new LibraryIndexCache(directory);
+    cache.save(archive, new LibraryIndexCache.Index());
+
+    File[] files = directory.listFiles();
+    assertThat(files).hasSize(1);
+    byte[] bytes = Files.readAllBytes(files[0].toPath());
+    Files.write(files[0].toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+    assertThat(cache.load(archive)).isNull();
+  }
+
+  @Test
+  public void testLibraryClassesFromIndexAreMarked() throws IOException {
+    File library = temp.newFile("bulk.jar");
+    Files.copy(new File("testData/bulk.jar").toPath(), library.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    File directory = temp.newFolder("index");
+
+    // the first run builds the index from the archive, the second one uses it
+    for (boolean indexed : new boolean[]{false, true}) {
+      Fernflower fernflower = createDecompiler(directory);
+      try {
+        fernflower.addLibrary(library);
+        StructClass cl = DecompilerContext.getStructContext().getClass("pkg/res/Loader");
+        assertThat(cl).isNotNull();
+        assertThat(cl.isCodeStripped()).isEqualTo(indexed);
+      }
+      finally {
+        fernflower.clearContext();
+      }
+    }
+  }
+
+  @Test
+  public void testStrippedCodeIsNotLoaded() throws IOException {
+    byte[] bytes;
+    try (ZipFile archive = new ZipFile("testData/bulk.jar")) {
+      bytes = InterpreterUtil.getBytes(archive, archive.getEntry("pkg/res/Loader.class"));
+    }
+    Fernflower fernflower = createDecompiler(temp.newFolder("index"));
+    try {
+      LazyLoader loader = new LazyLoader((externalPath, internalPath) -> bytes);
+      loader.addClassLink("pkg/res/Loader", new LazyLoader.Link("bulk.jar", "pkg/res/Loader.class"));
+
+      StructClass original = StructClass.create(new DataInputFullStream(bytes), true, loader);
+      StructMethod method = findMethodWithCode(original);
+      method.expandData(original);
+      assertThat(method.getInstructionSequence().length()).isGreaterThan(0);
+
+      StructClass stripped = StructClass.create(new DataInputFullStream(LibraryIndexCache.stripCode(bytes)), true, loader, true);
+      StructMethod strippedMethod = findMethodWithCode(stripped);
+      assertThatThrownBy(() -> strippedMethod.expandData(stripped)).isInstanceOf(IllegalStateException.class);
+    }
+    finally {
+      fernflower.clearContext();
+    }
+  }
+
+  private static StructMethod findMethodWithCode(StructClass cl) {
+    StructMethod method = cl.getMethods().stream().filter(StructMethod::containsCode).findFirst().orElse(null);
+    assertThat(method).isNotNull();
+    return method;
+  }
+
+  private static Fernflower createDecompiler(File indexDirectory) {
+    Map<String, Object> options = new HashMap<>();
+    options.put(IFernflowerPreferences.LOG_LEVEL, "error");
+    options.put(IFernflowerPreferences.LIBRARY_INDEX_CACHE, indexDirectory.getPath());
+    return new Fernflower((externalPath, internalPath) -> {
+      try (ZipFile archive = new ZipFile(externalPath)) {
+        return InterpreterUtil.getBytes(archive, archive.getEntry(internalPath));
+      }
+    }, null, options, new PrintStreamLogger(System.out));
+  }
+
+  private File createArchive(String name, String... entries) throws IOException {
+    File file = temp.newFile(name);
+    writeArchive(file, entries);
+    return file;
+  }
+
+  private static void writeArchive(File file, String... entries) throws IOException {
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+      for (String entry : entries) {
+        out.putNextEntry(new ZipEntry(entry));
+        out.write(new byte[16]);
+        out.closeEntry();
+      }
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package org.jetbrains.java.decompiler.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ZipArchiveWriterTest {
+  private static final LocalDateTime TIME = LocalDateTime.of(2001, 2, 3, 4, 5, 6);
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testDeflatedRoundTrip() throws IOException {
+    byte[] data = repeat("class A {}\n", 1000);
+    File file = temp.newFile("out.jar");
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+    try (ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(file), manifest)) {
+      writer.write(ZipArchiveWriter.compress("pkg/", new byte[0]));
+      writer.write(ZipArchiveWriter.compress("pkg/A.java", data));
+    }
+
+    try (JarFile jar = new JarFile(file)) {
+      assertThat(jar.getManifest().getMainAttributes().getValue("Manifest-Version")).isEqualTo("1.0");
+      assertThat(jar.getEntry("pkg/").isDirectory()).isTrue();
+      ZipEntry entry = jar.getEntry("pkg/A.java");
+      assertThat(entry.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+      assertThat(entry.getCompressedSize()).isLessThan(data.length);
+      assertThat(InterpreterUtil.getBytes(jar, entry)).isEqualTo(data);
+    }
+
+    File copy = copy(file, "pkg/A.java");
+    try (ZipFile zip = new ZipFile(copy)) {
+      assertThat(InterpreterUtil.getBytes(zip, zip.getEntry("pkg/A.java"))).isEqualTo(data);
+    }
+  }
+
+  @Test
+  public void testStoredEntryKeepsMethodAndTime() throws IOException {
+    byte[] data = "stored".getBytes(StandardCharsets.UTF_8);
+    File source = temp.newFile("source.zip");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(source))) {
+      ZipEntry entry = new ZipEntry("a.txt");
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(data.length);
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      entry.setCrc(crc.getValue());
+      entry.setTime(toMillis(TIME));
+      out.putNextEntry(entry);
+      out.write(data);
+      out.closeEntry();
+    }
+
+    File copy = copy(source, "a.txt");
+    try (ZipFile zip = new ZipFile(copy)) {
+      ZipEntry entry = zip.getEntry("a.txt");
+      assertThat(entry.getMethod()).isEqualTo(ZipEntry.STORED);
+      assertThat(entry.getTime()).isEqualTo(toMillis(TIME));
+      assertThat(InterpreterUtil.getBytes(zip, entry)).isEqualTo(data);
+    }
+  }
+
+  @Test
+  public void testNonUtf8NameRoundTrip() throws IOException {
+    Charset cp437 = Charset.forName("IBM437");
+    byte[] data = "text".getBytes(StandardCharsets.UTF_8);
+    File source = temp.newFile("source.zip");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(source), cp437)) {
+      out.putNextEntry(new ZipEntry("Ärger.txt")); // 0x8E in CP437, not valid UTF-8
+      out.write(data);
+      out.closeEntry();
+    }
+
+    File copy = copy(source, "Ärger.txt");
+    try (ZipFile zip = new ZipFile(copy, StandardCharsets.UTF_8)) {
+      assertThat(InterpreterUtil.getBytes(zip, zip.getEntry("Ärger.txt"))).isEqualTo(data);
+    }
+  }
+
+  @Test
+  public void testZip64RoundTrip() throws IOException {
+    int count = 0x10000 + 10;
+    File file = temp.newFile("many.zip");
+    try (ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(file), null)) {
+      for (int i = 0; i < count; i++) {
+        writer.write(ZipArchiveWriter.compress("e" + i, new byte[]{(byte)i}));
+      }
+    }
+
+    try (ZipFile zip = new ZipFile(file)) {
+      assertThat(zip.size()).isEqualTo(count);
+      assertThat(InterpreterUtil.getBytes(zip, zip.getEntry("e" + (count - 1)))).containsExactly((byte)(count - 1));
+    }
+    try (ZipArchiveReader reader = new ZipArchiveReader(file)) {
+      assertThat(reader.readRaw("e0")).isNotNull();
+      assertThat(reader.readRaw("e" + (count - 1))).isNotNull();
+    }
+  }
+
+  // copies the given entries of source as they are stored
+  private File copy(File source, String... names) throws IOException {
+    File target = temp.newFile();
+    try (ZipArchiveReader reader = new ZipArchiveReader(source);
+         ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(target), null)) {
+      for (String name : names) {
+        ZipArchiveWriter.Entry entry = reader.readRaw(name);
+        assertThat(entry).isNotNull();
+        writer.write(entry);
+      }
+    }
+    return target;
+  }
+
+  private static long toMillis(LocalDateTime time) {
+    return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  private static byte[] repeat(String text, int times) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      builder.append(text);
+    }
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
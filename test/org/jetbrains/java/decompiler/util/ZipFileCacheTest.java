@@ -0,0 +1,94 @@
+package org.jetbrains.java.decompiler.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ZipFileCacheTest {
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testNewHandleStaysOpenWhenAllHandlesAreInUse() throws IOException {
+    File a = createArchive("a.zip");
+    File b = createArchive("b.zip");
+
+    try (ZipFileCache cache = new ZipFileCache(1);
+         ZipFileCache.Handle handleA = cache.acquire(a);
+         ZipFileCache.Handle handleB = cache.acquire(b)) {
+      assertThat(cache.size()).isEqualTo(2);
+      assertThat(handleA.getArchive().getEntry("entry")).isNotNull();
+      assertThat(handleB.getArchive().getEntry("entry")).isNotNull();
+    }
+  }
+
+  @Test
+  public void testIdleHandlesAreClosedOverTheLimit() throws IOException {
+    File a = createArchive("a.zip");
+    File b = createArchive("b.zip");
+
+    try (ZipFileCache cache = new ZipFileCache(1)) {
+      ZipFileCache.Handle handleA = cache.acquire(a);
+      handleA.close();
+      assertThat(handleA.getArchive().getEntry("entry")).isNotNull();
+
+      try (ZipFileCache.Handle handleB = cache.acquire(b)) {
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(handleB.getArchive().getEntry("entry")).isNotNull();
+        assertThatThrownBy(() -> handleA.getArchive().getEntry("entry")).isInstanceOf(IllegalStateException.class);
+      }
+    }
+  }
+
+  @Test
+  public void testHandleInUseIsClosedOnRelease() throws IOException {
+    File a = createArchive("a.zip");
+
+    ZipFileCache cache = new ZipFileCache(1);
+    ZipFileCache.Handle first = cache.acquire(a);
+    ZipFileCache.Handle second = cache.acquire(a);
+    assertThat(second.getArchive()).isSameAs(first.getArchive());
+
+    cache.close();
+    assertThat(cache.size()).isEqualTo(0);
+
+    first.close();
+    assertThat(second.getArchive().getEntry("entry")).isNotNull();
+    second.close();
+    assertThatThrownBy(() -> second.getArchive().getEntry("entry")).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void testClosingHandleTwiceReleasesOnce() throws IOException {
+    File a = createArchive("a.zip");
+
+    ZipFileCache cache = new ZipFileCache(1);
+    ZipFileCache.Handle first = cache.acquire(a);
+    ZipFileCache.Handle second = cache.acquire(a);
+    cache.close();
+
+    first.close();
+    first.close();
+    assertThat(second.getArchive().getEntry("entry")).isNotNull();
+    second.close();
+    assertThatThrownBy(() -> second.getArchive().getEntry("entry")).isInstanceOf(IllegalStateException.class);
+  }
+
+  private File createArchive(String name) throws IOException {
+    File file = temp.newFile(name);
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+      out.putNextEntry(new ZipEntry("entry"));
+      out.write(1);
+      out.closeEntry();
+    }
+    return file;
+  }
+}